@@ -0,0 +1,45 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import walkforward.ClassifierType;
+import walkforward.ResultMetrics;
+import walkforward.StreamingEvaluator;
+import walkforward.WalkForwardUtils;
+import weka.classifiers.Evaluation;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClassifierBenchmark {
+    @Param({"RANDOM_FOREST", "NAIVE_BAYES", "IBK"})
+    public ClassifierType classifier;
+
+    /* -p kdTree=true searches the neighbours of IBk in a KdTreeNearestNeighbours */
+    @Param({"false"})
+    public boolean kdTree;
+
+    @Benchmark
+    public Evaluation simpleClassify(DatasetState state) {
+        return WalkForwardUtils.simpleClassify(state.trainingSet, state.testingSet, classifier.newClassifier(1, 1, null, kdTree));
+    }
+
+    @Benchmark
+    public ResultMetrics simpleClassifyStreaming(DatasetState state) {
+        return WalkForwardUtils.simpleClassify(state.trainingSet, state.testingSet, classifier.newClassifier(1, 1, null, kdTree),
+                StreamingEvaluator.forCurrentThread());
+    }
+}
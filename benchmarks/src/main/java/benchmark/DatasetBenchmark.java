@@ -0,0 +1,81 @@
+package benchmark;
+
+import myexception.NumberOfReleaseOutOfBoundException;
+import myexception.SetTypeException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import walkforward.DatasetLoader;
+import walkforward.ReleaseIndex;
+import walkforward.SetType;
+import walkforward.WalkForward;
+import walkforward.WalkForwardDataset;
+import walkforward.WalkForwardUtils;
+import weka.core.Instances;
+import weka.core.converters.ConverterUtils.DataSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DatasetBenchmark {
+    private File cutDataset;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        cutDataset = File.createTempFile("cut_dataset", ".csv");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(cutDataset.toPath());
+    }
+
+    @Benchmark
+    public Instances getSet(DatasetState state) throws Exception {
+        return new DataSource(WalkForward.getSet(state.dataset, SetType.TRAINING, state.trainingSetSize, state.testingSetSize)).getDataSet();
+    }
+
+    @Benchmark
+    public Object getSetText(DatasetState state) throws SetTypeException {
+        return WalkForward.getSet(state.dataset, SetType.TESTING, state.trainingSetSize, state.testingSetSize);
+    }
+
+    /* the parse the deprecated size helpers of WalkForwardUtils repeated on every call, the index then answers every step */
+    @Benchmark
+    public int buildReleaseIndex(DatasetState state) throws IOException, NumberOfReleaseOutOfBoundException {
+        ReleaseIndex releaseIndex = ReleaseIndex.build(state.dataset);
+        return releaseIndex.getTestingSetSize(releaseIndex.getTrainingSetSize(state.step));
+    }
+
+    @Benchmark
+    public File removeReleases(DatasetState state) {
+        return WalkForwardUtils.removeReleases(state.dataset.getPath(), 1, 1, cutDataset);
+    }
+
+    @Benchmark
+    public WalkForwardDataset loadDataset(DatasetState state) throws Exception {
+        return DatasetLoader.load(state.dataset);
+    }
+
+    @Benchmark
+    public WalkForwardDataset loadDatasetParallel(DatasetState state) throws Exception {
+        return DatasetLoader.load(state.dataset, Runtime.getRuntime().availableProcessors());
+    }
+}
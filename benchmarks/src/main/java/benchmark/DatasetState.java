@@ -0,0 +1,56 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import walkforward.DatasetLoader;
+import walkforward.WalkForwardDataset;
+import weka.core.Instances;
+
+import java.io.File;
+import java.nio.file.Files;
+
+/*
+ * Synthetic dataset shared by the benchmarks. Scale it from the command line, for example
+ * java -jar target/benchmarks.jar -p releases=100 -p rowsPerRelease=1000,10000,100000
+ * goes from 100k to 10M rows. The benchmarked step is the one in the middle of the history.
+ */
+@State(Scope.Benchmark)
+public class DatasetState {
+    @Param({"10"})
+    public int releases;
+
+    @Param({"1000"})
+    public int rowsPerRelease;
+
+    @Param({"0.15"})
+    public double defectRate;
+
+    public File dataset;
+    public int step;
+    public int trainingSetSize;
+    public int testingSetSize;
+    public Instances trainingSet;
+    public Instances testingSet;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataset = File.createTempFile("synthetic_dataset", ".csv");
+        new SyntheticDatasetGenerator(releases, rowsPerRelease, defectRate, 42).generate(dataset);
+
+        WalkForwardDataset loaded = DatasetLoader.load(dataset);
+        step = Math.max(1, releases / 2);
+        trainingSetSize = loaded.getReleaseIndex().getTrainingSetSize(step);
+        testingSetSize = loaded.getReleaseIndex().getTestingSetSize(trainingSetSize);
+        trainingSet = loaded.getTrainingSet(step);
+        testingSet = loaded.getTestingSet(step);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(dataset.toPath());
+    }
+}
@@ -0,0 +1,59 @@
+package benchmark;
+
+import featureselection.FeatureSelection;
+import featureselection.FeatureSelectionCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import walkforward.SetType;
+import walkforward.WalkForward;
+import walkforward.WalkForwardUtils;
+import weka.core.Instances;
+import weka.core.converters.ConverterUtils.DataSource;
+import weka.filters.Filter;
+import weka.filters.unsupervised.attribute.Remove;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FilterBenchmark {
+    /* training set with the release and class columns, as read back from getSet */
+    private Instances arffTrainingSet;
+    private final FeatureSelectionCache featureSelectionCache = new FeatureSelectionCache(256);
+
+    @Setup(Level.Trial)
+    public void setUp(DatasetState state) throws Exception {
+        arffTrainingSet = new DataSource(WalkForward.getSet(state.dataset, SetType.TRAINING, state.trainingSetSize, state.testingSetSize))
+                .getDataSet();
+    }
+
+    @Benchmark
+    public Instances removeFilter() throws Exception {
+        Remove removeFilter = WalkForwardUtils.createRemoveFilter(arffTrainingSet, new int[] {0, 1});
+        return Filter.useFilter(arffTrainingSet, removeFilter);
+    }
+
+    @Benchmark
+    public Instances bestFirstFilter(DatasetState state) {
+        return FeatureSelection.createFilteredInstances(state.trainingSet, FeatureSelection.createBestFirstFilter(state.trainingSet));
+    }
+
+    @Benchmark
+    public int[] bestFirstSelection(DatasetState state) throws Exception {
+        /* content addressed, every invocation after the first one measures the cache lookup */
+        return FeatureSelection.selectAttributes(state.trainingSet, featureSelectionCache);
+    }
+}
@@ -0,0 +1,74 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import utils.CSVRow;
+import utils.StringConstant;
+import walkforward.ClassifierType;
+import walkforward.ResultSink;
+import walkforward.WalkForwardUtils;
+import weka.classifiers.Evaluation;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResultWriteBenchmark {
+    /* rows of a step, the times are per row */
+    private static final int ROWS = 64;
+
+    private File outputFile;
+    private CSVRow csvRow;
+    private Evaluation evaluation;
+
+    @Setup(Level.Trial)
+    public void setUp(DatasetState state) throws Exception {
+        outputFile = File.createTempFile("walk_forward", ".csv");
+        WalkForwardUtils.writeCSVHeader(outputFile.getPath());
+        csvRow = new CSVRow(outputFile.getPath(), "synthetic", state.step, 0.5f, 0.15f, 0.15f, StringConstant.NAIVE_BAYES,
+                StringConstant.NO, StringConstant.NO, StringConstant.NO);
+        evaluation = WalkForwardUtils.simpleClassify(state.trainingSet, state.testingSet, ClassifierType.NAIVE_BAYES.newClassifier(1));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(outputFile.toPath());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void writeResultLine() {
+        for(int i = 0; i < ROWS; i++) {
+            WalkForwardUtils.writeResultLine(csvRow, evaluation);
+        }
+    }
+
+    /* the rows are on disk only once the sink is closed, so the close is measured as well */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void resultSinkWrite() throws IOException {
+        try(ResultSink resultSink = new ResultSink(outputFile.getPath(), ROWS, 1000)) {
+            for(int i = 0; i < ROWS; i++) {
+                resultSink.write(csvRow, evaluation);
+            }
+        }
+    }
+}
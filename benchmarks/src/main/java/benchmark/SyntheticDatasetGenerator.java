@@ -0,0 +1,92 @@
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/*
+ * Writes a CSV with the schema of the project datasets: release, class, the 9 metrics and buggy.
+ * The same arguments always produce the same file.
+ */
+public class SyntheticDatasetGenerator {
+    private static final String HEADER = "Version,File Name,Size,LOC_touched,NR,NAuth,LOC_added,MAX_LOC_added,AVG_LOC_added,Churn,MAX_Churn,Buggy";
+
+    private final int releases;
+    private final int rowsPerRelease;
+    private final double defectRate;
+    private final long seed;
+    /* share of metrics written as "null", as the dataset extractor does for files without history */
+    private double nullRate = 0.01;
+
+    public SyntheticDatasetGenerator(int releases, int rowsPerRelease, double defectRate, long seed) {
+        this.releases = releases;
+        this.rowsPerRelease = rowsPerRelease;
+        this.defectRate = defectRate;
+        this.seed = seed;
+    }
+
+    public void setNullRate(double nullRate) {
+        this.nullRate = nullRate;
+    }
+
+    public void generate(File output) throws IOException {
+        Random random = new Random(seed);
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(output), 1 << 16)) {
+            writer.write(HEADER);
+            writer.newLine();
+            StringBuilder line = new StringBuilder(128);
+            for(int release = 1; release <= releases; release++) {
+                for(int row = 0; row < rowsPerRelease; row++) {
+                    boolean buggy = random.nextDouble() < defectRate;
+                    /* buggy files are bigger and more touched, so that the classifiers have something to learn */
+                    double scale = buggy ? 2.5 : 1.0;
+                    int size = 20 + random.nextInt(2000);
+                    int locTouched = (int) (random.nextInt(200) * scale);
+                    int nr = 1 + (int) (random.nextInt(15) * scale);
+                    int nAuth = 1 + random.nextInt(6);
+                    int locAdded = (int) (random.nextInt(150) * scale);
+                    int maxLocAdded = locAdded == 0 ? 0 : random.nextInt(locAdded + 1);
+                    double avgLocAdded = nr == 0 ? 0 : (double) locAdded / nr;
+                    int churn = locAdded - random.nextInt(locTouched - locAdded + 1 > 0 ? locTouched - locAdded + 1 : 1);
+                    int maxChurn = Math.abs(churn) == 0 ? 0 : random.nextInt(Math.abs(churn) + 1);
+
+                    line.setLength(0);
+                    line.append(release).append(",src/main/java/org/example/module").append(row % 97).append("/File").append(row).append(".java");
+                    appendMetric(line, random, size);
+                    appendMetric(line, random, locTouched);
+                    appendMetric(line, random, nr);
+                    appendMetric(line, random, nAuth);
+                    appendMetric(line, random, locAdded);
+                    appendMetric(line, random, maxLocAdded);
+                    appendMetric(line, random, Math.round(avgLocAdded * 100) / 100.0);
+                    appendMetric(line, random, churn);
+                    appendMetric(line, random, maxChurn);
+                    line.append(',').append(buggy ? "yes" : "no");
+                    writer.write(line.toString());
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    private void appendMetric(StringBuilder line, Random random, Number value) {
+        line.append(',');
+        if(random.nextDouble() < nullRate) {
+            line.append("null");
+        } else {
+            line.append(value);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 4) {
+            System.err.println("Usage: SyntheticDatasetGenerator <output.csv> <releases> <rowsPerRelease> <defectRate> [seed]");
+            System.exit(1);
+        }
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 42;
+        new SyntheticDatasetGenerator(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Double.parseDouble(args[3]), seed)
+                .generate(new File(args[0]));
+    }
+}
@@ -0,0 +1,37 @@
+package balancing;
+
+import utils.StringConstant;
+import weka.core.Instances;
+
+public enum Balancing {
+    NONE(StringConstant.NO),
+    OVERSAMPLING(StringConstant.OVERSAMPLING),
+    UNDERSAMPLING(StringConstant.UNDERSAMPLING),
+    SMOTE(StringConstant.SMOTE);
+
+    private final String label;
+
+    Balancing(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /* the training set itself for NONE, otherwise a view in which both classes have the same number of rows */
+    public Instances apply(Instances trainingSet, long seed) {
+        switch (this) {
+            case NONE:
+                return trainingSet;
+            case OVERSAMPLING:
+                return Sampling.oversample(trainingSet, seed);
+            case UNDERSAMPLING:
+                return Sampling.undersample(trainingSet, seed);
+            case SMOTE:
+                return Smote.apply(trainingSet, Smote.DEFAULT_NEIGHBOURS, seed);
+            default:
+                throw new IllegalStateException("Unknown balancing " + this);
+        }
+    }
+}
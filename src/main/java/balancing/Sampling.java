@@ -0,0 +1,109 @@
+package balancing;
+
+import weka.core.Instances;
+
+import java.util.Random;
+
+/*
+ * Random over and undersampling as row views of the training set.
+ * A view holds a new DenseInstance wrapper per row, drawn rows repeated included, that shares the attribute values
+ * of its training row: a view costs a small object and a reference per row whatever the number of attributes,
+ * the values are never copied.
+ */
+public class Sampling {
+    private Sampling() {}
+
+    /* minority rows drawn with replacement until the two classes have the same size */
+    public static Instances oversample(Instances trainingSet, long seed) {
+        int[] classCounts = countClasses(trainingSet);
+        int minorityClass = getMinorityClass(classCounts);
+        if(minorityClass < 0) {
+            return trainingSet;
+        }
+        int[] minorityRows = getRows(trainingSet, minorityClass, classCounts[minorityClass]);
+        int added = classCounts[1 - minorityClass] - classCounts[minorityClass];
+
+        int[] rows = new int[trainingSet.numInstances() + added];
+        for(int i = 0; i < trainingSet.numInstances(); i++) {
+            rows[i] = i;
+        }
+        Random random = new Random(seed);
+        for(int i = 0; i < added; i++) {
+            rows[trainingSet.numInstances() + i] = minorityRows[random.nextInt(minorityRows.length)];
+        }
+        return createView(trainingSet, rows);
+    }
+
+    /* majority rows drawn without replacement down to the size of the minority class, in their original order */
+    public static Instances undersample(Instances trainingSet, long seed) {
+        int[] classCounts = countClasses(trainingSet);
+        int minorityClass = getMinorityClass(classCounts);
+        if(minorityClass < 0) {
+            return trainingSet;
+        }
+        int majorityClass = 1 - minorityClass;
+        int[] majorityRows = getRows(trainingSet, majorityClass, classCounts[majorityClass]);
+        int kept = classCounts[minorityClass];
+
+        /* partial Fisher-Yates: the first kept positions end up holding a uniform sample */
+        Random random = new Random(seed);
+        boolean[] keep = new boolean[trainingSet.numInstances()];
+        for(int i = 0; i < kept; i++) {
+            int j = i + random.nextInt(majorityRows.length - i);
+            int swap = majorityRows[i];
+            majorityRows[i] = majorityRows[j];
+            majorityRows[j] = swap;
+            keep[majorityRows[i]] = true;
+        }
+
+        int[] rows = new int[2 * kept];
+        int position = 0;
+        for(int i = 0; i < trainingSet.numInstances(); i++) {
+            if(keep[i] || (int) trainingSet.instance(i).classValue() == minorityClass) {
+                rows[position++] = i;
+            }
+        }
+        return createView(trainingSet, rows);
+    }
+
+    public static Instances createView(Instances trainingSet, int[] rows) {
+        return createView(trainingSet, rows, 0);
+    }
+
+    /* the view gets room for extra rows, which the caller adds after the selected ones */
+    public static Instances createView(Instances trainingSet, int[] rows, int extraRows) {
+        Instances view = new Instances(trainingSet, rows.length + extraRows);
+        for(int row : rows) {
+            /* Instances.add copies the wrapper, a DenseInstance copy shares the attribute values */
+            view.add(trainingSet.instance(row));
+        }
+        return view;
+    }
+
+    public static int[] countClasses(Instances trainingSet) {
+        int[] classCounts = new int[trainingSet.numClasses()];
+        for(int i = 0; i < trainingSet.numInstances(); i++) {
+            classCounts[(int) trainingSet.instance(i).classValue()]++;
+        }
+        return classCounts;
+    }
+
+    /* -1 when the classes are already balanced or one of them is missing, in which case nothing is resampled */
+    public static int getMinorityClass(int[] classCounts) {
+        if(classCounts.length != 2 || classCounts[0] == classCounts[1] || classCounts[0] == 0 || classCounts[1] == 0) {
+            return -1;
+        }
+        return classCounts[0] < classCounts[1] ? 0 : 1;
+    }
+
+    public static int[] getRows(Instances trainingSet, int classValue, int count) {
+        int[] rows = new int[count];
+        int position = 0;
+        for(int i = 0; i < trainingSet.numInstances(); i++) {
+            if((int) trainingSet.instance(i).classValue() == classValue) {
+                rows[position++] = i;
+            }
+        }
+        return rows;
+    }
+}
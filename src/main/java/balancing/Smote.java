@@ -0,0 +1,133 @@
+package balancing;
+
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * SMOTE: synthetic minority rows interpolated between a minority row and one of its k nearest minority neighbours,
+ * until the two classes have the same size. The training rows are shared with a view, the synthetic rows are
+ * written into a buffer allocated once and handed to Weka without copies. Distances are euclidean over the
+ * attributes normalized by their range on the training set, like IBk.
+ */
+public class Smote {
+    public static final int DEFAULT_NEIGHBOURS = 5;
+
+    private Smote() {}
+
+    public static Instances apply(Instances trainingSet, int nNeighbours, long seed) {
+        int[] classCounts = Sampling.countClasses(trainingSet);
+        int minorityClass = Sampling.getMinorityClass(classCounts);
+        if(minorityClass < 0 || classCounts[minorityClass] < 2) {
+            return trainingSet;
+        }
+        int[] minorityRows = Sampling.getRows(trainingSet, minorityClass, classCounts[minorityClass]);
+        int nSynthetic = classCounts[1 - minorityClass] - classCounts[minorityClass];
+        int k = Math.min(nNeighbours, minorityRows.length - 1);
+
+        int classIndex = trainingSet.classIndex();
+        int nAttributes = trainingSet.numAttributes();
+        double[] minorityValues = normalizeMinority(trainingSet, minorityRows);
+        int nFeatures = nAttributes - 1;
+
+        /* bases go round the minority rows, so only the first min(minority, synthetic) rows need their neighbours */
+        int nBases = Math.min(minorityRows.length, nSynthetic);
+        int[] neighbours = new int[nBases * k];
+        for(int base = 0; base < nBases; base++) {
+            findNeighbours(minorityValues, nFeatures, minorityRows.length, base, k, neighbours, base * k);
+        }
+
+        double[][] buffer = new double[nSynthetic][nAttributes];
+        Random random = new Random(seed);
+        for(int s = 0; s < nSynthetic; s++) {
+            int base = s % nBases;
+            Instance baseRow = trainingSet.instance(minorityRows[base]);
+            Instance neighbourRow = trainingSet.instance(minorityRows[neighbours[base * k + random.nextInt(k)]]);
+            double gap = random.nextDouble();
+            double[] synthetic = buffer[s];
+            for(int a = 0; a < nAttributes; a++) {
+                if(a == classIndex) {
+                    synthetic[a] = minorityClass;
+                } else {
+                    double value = baseRow.value(a);
+                    synthetic[a] = value + gap * (neighbourRow.value(a) - value);
+                }
+            }
+        }
+
+        int[] rows = new int[trainingSet.numInstances()];
+        for(int i = 0; i < rows.length; i++) {
+            rows[i] = i;
+        }
+        Instances view = Sampling.createView(trainingSet, rows, nSynthetic);
+        for(double[] synthetic : buffer) {
+            /* DenseInstance keeps the array it is given */
+            view.add(new DenseInstance(1.0, synthetic));
+        }
+        return view;
+    }
+
+    /* minority rows as a row-major matrix of the non class attributes scaled to [0, 1] */
+    private static double[] normalizeMinority(Instances trainingSet, int[] minorityRows) {
+        int classIndex = trainingSet.classIndex();
+        int nAttributes = trainingSet.numAttributes();
+        int nFeatures = nAttributes - 1;
+        double[] min = new double[nAttributes];
+        double[] max = new double[nAttributes];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        for(int i = 0; i < trainingSet.numInstances(); i++) {
+            Instance instance = trainingSet.instance(i);
+            for(int a = 0; a < nAttributes; a++) {
+                min[a] = Math.min(min[a], instance.value(a));
+                max[a] = Math.max(max[a], instance.value(a));
+            }
+        }
+
+        double[] values = new double[minorityRows.length * nFeatures];
+        for(int r = 0; r < minorityRows.length; r++) {
+            Instance instance = trainingSet.instance(minorityRows[r]);
+            int feature = 0;
+            for(int a = 0; a < nAttributes; a++) {
+                if(a == classIndex) {
+                    continue;
+                }
+                double range = max[a] - min[a];
+                values[r * nFeatures + feature++] = range > 0 ? (instance.value(a) - min[a]) / range : 0;
+            }
+        }
+        return values;
+    }
+
+    /* the k nearest rows of row, itself excluded, written from neighbours[offset] in increasing distance */
+    private static void findNeighbours(double[] values, int nFeatures, int nRows, int row, int k, int[] neighbours, int offset) {
+        double[] distances = new double[k];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        int found = 0;
+        for(int other = 0; other < nRows; other++) {
+            if(other == row) {
+                continue;
+            }
+            double distance = 0;
+            for(int f = 0; f < nFeatures; f++) {
+                double difference = values[row * nFeatures + f] - values[other * nFeatures + f];
+                distance += difference * difference;
+            }
+            if(found == k && distance >= distances[k - 1]) {
+                continue;
+            }
+            /* insertion into the sorted top k */
+            int position = found < k ? found++ : k - 1;
+            while(position > 0 && distances[position - 1] > distance) {
+                distances[position] = distances[position - 1];
+                neighbours[offset + position] = neighbours[offset + position - 1];
+                position--;
+            }
+            distances[position] = distance;
+            neighbours[offset + position] = other;
+        }
+    }
+}
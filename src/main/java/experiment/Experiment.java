@@ -0,0 +1,32 @@
+package experiment;
+
+import utils.ProjectDescriptor;
+import walkforward.WalkForwardBatch;
+
+import java.io.File;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/* runs the walk forwards of an experiment spec; with --plan it only prints the stages they need */
+public class Experiment {
+    private static final Logger LOGGER = Logger.getLogger(Experiment.class.getName());
+
+    private Experiment() {}
+
+    public static void main(String[] args) throws Exception {
+        if(args.length < 1) {
+            throw new IllegalArgumentException("Usage: Experiment <spec.properties> [--plan]");
+        }
+        ExperimentSpec spec = ExperimentSpec.load(new File(args[0]));
+        StagePlan plan = StagePlan.compile(spec);
+        LOGGER.log(Level.INFO, "Stages of {0}, unique of requested:{1}{2}", new Object[] {args[0], System.lineSeparator(), plan.summary()});
+        if(args.length > 1 && args[1].equals("--plan")) {
+            return;
+        }
+        List<ProjectDescriptor> failed = new WalkForwardBatch(spec.getConfig()).run(spec.getProjects());
+        if(!failed.isEmpty()) {
+            throw new IllegalStateException(failed.size() + " walk forward(s) failed, see the log for details");
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package experiment;
+
+import balancing.Balancing;
+import utils.ProjectDescriptor;
+import walkforward.ClassifierType;
+import walkforward.Technique;
+import walkforward.WalkForwardConfig;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/*
+ * What an experiment runs, read from a properties file:
+ *
+ *     datasets = zookeeper, bookkeeper
+ *     dataset.zookeeper.path = /data/zookeeper_dataset.csv
+ *     dataset.zookeeper.removeFromTop = 7
+ *     dataset.zookeeper.removeFromBottom = 60
+ *     dataset.zookeeper.output = zookeeper_walk_forward.csv
+ *     classifiers = RANDOM_FOREST, NAIVE_BAYES, IBK
+ *     classifier.RANDOM_FOREST.options = -I 50
+ *     featureSelection = no, yes
+ *     costSensitivity = no, yes
+ *     balancing = NONE, SMOTE
+ *     costRatios = 10, 2.5
+ *     config.nThreads = 8
+ *
+ * Every dataset is crossed with every classifier, feature selection, cost sensitivity and balancing value.
+ * costSensitivity = yes evaluates the false negative cost of the configuration; costRatios instead derives one row per
+ * ratio from the predictions of the cells without cost sensitivity, which are trained once. config.* are the options
+ * of WalkForwardConfig.toProperties.
+ */
+public class ExperimentSpec {
+    private final List<ProjectDescriptor> projects;
+    private final WalkForwardConfig config;
+
+    private ExperimentSpec(List<ProjectDescriptor> projects, WalkForwardConfig config) {
+        this.projects = projects;
+        this.config = config;
+    }
+
+    public static ExperimentSpec load(File file) throws IOException {
+        Properties properties = new Properties();
+        try(Reader reader = new FileReader(file)) {
+            properties.load(reader);
+        }
+        return of(properties);
+    }
+
+    public static ExperimentSpec of(Properties properties) {
+        List<ProjectDescriptor> projects = new ArrayList<>();
+        for(String dataset : split(require(properties, "datasets"))) {
+            String prefix = "dataset." + dataset + ".";
+            projects.add(new ProjectDescriptor(require(properties, prefix + "path"), dataset,
+                    Integer.parseInt(properties.getProperty(prefix + "removeFromTop", "0")),
+                    Integer.parseInt(properties.getProperty(prefix + "removeFromBottom", "0")),
+                    properties.getProperty(prefix + "output", dataset + "_walk_forward.csv")));
+        }
+
+        Properties configProperties = new Properties();
+        for(String key : properties.stringPropertyNames()) {
+            if(key.startsWith("config.")) {
+                configProperties.setProperty(key.substring("config.".length()), properties.getProperty(key));
+            }
+        }
+        WalkForwardConfig config = WalkForwardConfig.fromProperties(configProperties);
+
+        String classifiers = properties.getProperty("classifiers");
+        if(classifiers != null) {
+            config.setClassifierTypes(split(classifiers).stream().map(ClassifierType::valueOf).toArray(ClassifierType[]::new));
+        }
+        for(ClassifierType classifierType : config.getClassifierTypes()) {
+            config.setClassifierOptions(classifierType, properties.getProperty("classifier." + classifierType.name() + ".options"));
+        }
+        String balancings = properties.getProperty("balancing");
+        if(balancings != null) {
+            config.setBalancings(split(balancings).stream().map(Balancing::valueOf).toArray(Balancing[]::new));
+        }
+        boolean[] featureSelection = parseFlags(properties.getProperty("featureSelection", "no, yes"));
+        boolean[] costSensitivity = parseFlags(properties.getProperty("costSensitivity", "no, yes"));
+        List<Technique> techniques = new ArrayList<>();
+        for(Technique technique : Technique.values()) {
+            if(featureSelection[technique.isFeatureSelection() ? 1 : 0] && costSensitivity[technique.isCostSensitivity() ? 1 : 0]) {
+                techniques.add(technique);
+            }
+        }
+        config.setTechniques(techniques.toArray(new Technique[0]));
+        String costRatios = properties.getProperty("costRatios");
+        if(costRatios != null) {
+            config.setCostRatios(split(costRatios).stream().mapToDouble(Double::parseDouble).toArray());
+        }
+        String decisionThresholds = properties.getProperty("decisionThresholds");
+        if(decisionThresholds != null) {
+            config.setDecisionThresholds(split(decisionThresholds).stream().mapToDouble(Double::parseDouble).toArray());
+        }
+        return new ExperimentSpec(projects, config);
+    }
+
+    public List<ProjectDescriptor> getProjects() {
+        return projects;
+    }
+
+    public WalkForwardConfig getConfig() {
+        return config;
+    }
+
+    private static String require(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if(value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing " + key + " in the experiment spec");
+        }
+        return value;
+    }
+
+    /* index 0 for no, 1 for yes */
+    private static boolean[] parseFlags(String values) {
+        boolean[] flags = new boolean[2];
+        for(String value : split(values)) {
+            switch (value.toLowerCase()) {
+                case "no":
+                case "false":
+                    flags[0] = true;
+                    break;
+                case "yes":
+                case "true":
+                    flags[1] = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Expected yes or no, got " + value);
+            }
+        }
+        return flags;
+    }
+
+    private static List<String> split(String values) {
+        List<String> list = new ArrayList<>();
+        for(String value : Arrays.asList(values.split(","))) {
+            if(!value.trim().isEmpty()) {
+                list.add(value.trim());
+            }
+        }
+        return list;
+    }
+}
@@ -0,0 +1,28 @@
+package experiment;
+
+import java.util.List;
+
+/* a node of the StagePlan, identified by its key: two cells needing the same key share the stage */
+public class PlannedStage {
+    private final StageKind kind;
+    private final String key;
+    private final List<PlannedStage> dependencies;
+
+    public PlannedStage(StageKind kind, String key, List<PlannedStage> dependencies) {
+        this.kind = kind;
+        this.key = key;
+        this.dependencies = dependencies;
+    }
+
+    public StageKind getKind() {
+        return kind;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public List<PlannedStage> getDependencies() {
+        return dependencies;
+    }
+}
@@ -0,0 +1,18 @@
+package experiment;
+
+public enum StageKind {
+    /* dataset read and converted to instances */
+    LOAD,
+    /* training and testing views of a step */
+    PROJECT,
+    /* balanced view of a training set */
+    BALANCE,
+    /* attribute subset selected on the unbalanced training set of a step */
+    SELECT_FEATURES,
+    /* copy of a training or testing set reduced to the selected attributes */
+    FILTER,
+    /* model built on a training set */
+    TRAIN,
+    /* result row computed from a model and a testing set */
+    EVALUATE
+}
@@ -0,0 +1,123 @@
+package experiment;
+
+import balancing.Balancing;
+import utils.ProjectDescriptor;
+import walkforward.CellLayout;
+import walkforward.ClassifierType;
+import walkforward.ReleaseIndex;
+import walkforward.SweepPoint;
+import walkforward.Technique;
+import walkforward.WalkForwardConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * The stages an ExperimentSpec needs, one node per distinct key. Every cell of the CellLayout the runner uses asks for
+ * the chain of stages of its result row; a stage asked by several cells is planned once, the way the runner shares it at run time: the views
+ * of a step, its balanced training sets, its attribute selection and filtered copies are built once per step, a model
+ * is reused by the cost sensitive cells and by the sweep points, an incremental model is updated from the previous step.
+ * getRequested counts every request, as if each cell computed its whole chain.
+ */
+public class StagePlan {
+    private final Map<String, PlannedStage> stages = new LinkedHashMap<>();
+    private final Map<StageKind, Integer> requested = new EnumMap<>(StageKind.class);
+
+    private StagePlan() {}
+
+    public static StagePlan compile(ExperimentSpec spec) throws IOException {
+        StagePlan plan = new StagePlan();
+        for(ProjectDescriptor project : spec.getProjects()) {
+            ReleaseIndex releaseIndex = ReleaseIndex.build(new File(project.getDatasetPath()));
+            int nReleases = releaseIndex.getNumberOfReleases() - project.getReleaseToRemoveFromTop() - project.getReleaseToRemoveFromBottom();
+            plan.addProject(project.getDatasetName(), nReleases, spec.getConfig());
+        }
+        return plan;
+    }
+
+    private void addProject(String dataset, int nReleases, WalkForwardConfig config) {
+        PlannedStage load = stage(StageKind.LOAD, dataset);
+        CellLayout cellLayout = CellLayout.of(config);
+        List<SweepPoint> sweepPoints = cellLayout.getSweepPoints();
+        Map<ClassifierType, PlannedStage> incrementalModels = new EnumMap<>(ClassifierType.class);
+        int toStep = Math.min(config.getToStep(), nReleases - 1);
+        for(int i = config.getFromStep(); i < toStep; i++) {
+            String stepKey = dataset + ":" + i;
+            for(CellLayout.Entry entry : cellLayout.getEntries()) {
+                Balancing balancing = entry.getBalancing();
+                Technique technique = entry.getTechnique();
+                PlannedStage project = stage(StageKind.PROJECT, stepKey, load);
+                PlannedStage training = project;
+                if(balancing != Balancing.NONE) {
+                    training = stage(StageKind.BALANCE, stepKey + ":" + balancing, project);
+                }
+                PlannedStage testing = project;
+                if(technique.isFeatureSelection()) {
+                    PlannedStage selection = stage(StageKind.SELECT_FEATURES, stepKey, project);
+                    training = stage(StageKind.FILTER, stepKey + ":" + balancing + ":training", training, selection);
+                    testing = stage(StageKind.FILTER, stepKey + ":testing", project, selection);
+                }
+
+                /* a minimum expected cost cell with a base entry reuses the model of that entry */
+                CellLayout.Entry modelEntry = entry.getBaseEntry() != null ? entry.getBaseEntry() : entry;
+                String modelKey = stepKey + ":" + balancing + ":" + entry.getClassifierType() + ":" + modelEntry.getTechnique();
+                PlannedStage model;
+                if(entry.isIncremental()) {
+                    PlannedStage previous = incrementalModels.get(entry.getClassifierType());
+                    model = previous == null ? stage(StageKind.TRAIN, modelKey + ":incremental", training)
+                            : stage(StageKind.TRAIN, modelKey + ":incremental", training, previous);
+                    incrementalModels.put(entry.getClassifierType(), model);
+                } else {
+                    model = stage(StageKind.TRAIN, modelKey, training);
+                }
+
+                String rowKey = stepKey + ":" + balancing + ":" + entry.getClassifierType() + ":" + technique;
+                if(sweepPoints.isEmpty()) {
+                    stage(StageKind.EVALUATE, rowKey, model, testing);
+                }
+                for(SweepPoint sweepPoint : sweepPoints) {
+                    stage(StageKind.EVALUATE, rowKey + ":" + sweepPoint.getLabel(), model, testing);
+                }
+            }
+        }
+    }
+
+    private PlannedStage stage(StageKind kind, String key, PlannedStage... dependencies) {
+        requested.merge(kind, 1, Integer::sum);
+        return stages.computeIfAbsent(kind + ":" + key, id -> new PlannedStage(kind, key, Arrays.asList(dependencies)));
+    }
+
+    public Collection<PlannedStage> getStages() {
+        return stages.values();
+    }
+
+    public int getRequested(StageKind kind) {
+        return requested.getOrDefault(kind, 0);
+    }
+
+    public int getUnique(StageKind kind) {
+        int unique = 0;
+        for(PlannedStage stage : stages.values()) {
+            if(stage.getKind() == kind) {
+                unique++;
+            }
+        }
+        return unique;
+    }
+
+    /* one line per kind: unique stages out of those requested */
+    public String summary() {
+        List<String> lines = new ArrayList<>();
+        for(StageKind kind : StageKind.values()) {
+            lines.add(String.format("%-16s %6d of %6d", kind, getUnique(kind), getRequested(kind)));
+        }
+        return String.join(System.lineSeparator(), lines);
+    }
+}
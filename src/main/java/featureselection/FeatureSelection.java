@@ -1,17 +1,29 @@
 package featureselection;
 
+import instrumentation.Stage;
+import instrumentation.StageMetrics;
+import instrumentation.StageTimer;
+import weka.attributeSelection.ASEvaluation;
+import weka.attributeSelection.ASSearch;
 import weka.attributeSelection.BestFirst;
 import weka.attributeSelection.CfsSubsetEval;
+import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.OptionHandler;
+import weka.core.Utils;
 import weka.filters.Filter;
 import weka.filters.supervised.attribute.AttributeSelection;
+import weka.filters.unsupervised.attribute.Remove;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.logging.Level;
-import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
 public class FeatureSelection {
-    private static final Logger LOGGER = LogManager.getLogManager().getLogger(FeatureSelection.class.getName());
+    private static final Logger LOGGER = Logger.getLogger(FeatureSelection.class.getName());
     private FeatureSelection(){}
 
     public static AttributeSelection createBestFirstFilter(Instances trainingSet) {
@@ -29,10 +41,12 @@ public class FeatureSelection {
         return filter;
     }
 
-    public static Instances createFilteredInstances(Instances instances, AttributeSelection filter) {
+    public static Instances createFilteredInstances(Instances instances, Filter filter) {
         Instances filteredInstances = null;
         try {
+            StageTimer timer = StageMetrics.start(Stage.FILTER);
             filteredInstances = Filter.useFilter(instances, filter);
+            timer.stop();
             int numAttr = filteredInstances.numAttributes();
             filteredInstances.setClassIndex(numAttr - 1);
         } catch (Exception e) {
@@ -41,5 +55,77 @@ public class FeatureSelection {
         return filteredInstances;
     }
 
+    /* indices kept by CfsSubsetEval + BestFirst on the training set, class index included */
+    public static int[] selectAttributes(Instances trainingSet, FeatureSelectionCache cache) throws Exception {
+        CfsSubsetEval eval = new CfsSubsetEval();
+        BestFirst search = new BestFirst();
+        String key = createCacheKey(trainingSet, eval, search);
+
+        return cache.computeIfAbsent(key, () -> {
+            weka.attributeSelection.AttributeSelection selection = new weka.attributeSelection.AttributeSelection();
+            selection.setEvaluator(eval);
+            selection.setSearch(search);
+            StageTimer timer = StageMetrics.start(Stage.FEATURE_SELECTION);
+            selection.SelectAttributes(trainingSet);
+            timer.stop();
+            return selection.selectedAttributes();
+        });
+    }
+
+    /* same output as createBestFirstFilter, but the subset search is looked up in the cache first */
+    public static Remove createCachedBestFirstFilter(Instances trainingSet, FeatureSelectionCache cache) {
+        int[] selectedAttributes = null;
+        try {
+            selectedAttributes = FeatureSelection.selectAttributes(trainingSet, cache);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Exception caught", e);
+        }
+        return createSelectionFilter(trainingSet, selectedAttributes);
+    }
+
+    /* keeps only the given attributes, class index included */
+    public static Remove createSelectionFilter(Instances trainingSet, int[] selectedAttributes) {
+        Remove filter = new Remove();
+        try {
+            filter.setAttributeIndicesArray(selectedAttributes);
+            filter.setInvertSelection(true);
+            filter.setInputFormat(trainingSet);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Exception caught", e);
+        }
+        return filter;
+    }
+
+    public static String createCacheKey(Instances trainingSet, ASEvaluation evaluator, ASSearch search) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(describe(evaluator).getBytes(StandardCharsets.UTF_8));
+        digest.update(describe(search).getBytes(StandardCharsets.UTF_8));
 
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * (trainingSet.numAttributes() + 1));
+        for(int i = 0; i < trainingSet.numAttributes(); i++) {
+            digest.update(trainingSet.attribute(i).toString().getBytes(StandardCharsets.UTF_8));
+        }
+        buffer.putLong(trainingSet.classIndex()).putLong(trainingSet.numInstances()).flip();
+        digest.update(buffer);
+        for(Instance instance : trainingSet) {
+            buffer.clear();
+            for(int i = 0; i < trainingSet.numAttributes(); i++) {
+                buffer.putLong(Double.doubleToLongBits(instance.value(i)));
+            }
+            buffer.putLong(Double.doubleToLongBits(instance.weight()));
+            buffer.flip();
+            digest.update(buffer);
+        }
+
+        StringBuilder key = new StringBuilder();
+        for(byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    private static String describe(Object object) {
+        String options = object instanceof OptionHandler ? Utils.joinOptions(((OptionHandler) object).getOptions()) : "";
+        return object.getClass().getName() + " " + options + "\n";
+    }
 }
@@ -0,0 +1,164 @@
+package featureselection;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+ * Selected attribute indices keyed by the content hash of the training set and of the selection configuration.
+ * Entries are kept in a bounded LRU map and, when a directory is given, in one small text file per key
+ * so that they survive across runs.
+ */
+public class FeatureSelectionCache {
+    private static final Logger LOGGER = Logger.getLogger(FeatureSelectionCache.class.getName());
+    private static final String EXTENSION = ".selection";
+
+    private final Map<String, int[]> memory;
+    private final Map<String, CompletableFuture<int[]>> inFlight = new ConcurrentHashMap<>();
+    private final File directory;
+    private final int maxDiskEntries;
+
+    public FeatureSelectionCache(int maxMemoryEntries) {
+        this(maxMemoryEntries, null, 0);
+    }
+
+    public FeatureSelectionCache(int maxMemoryEntries, File directory, int maxDiskEntries) {
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+                return size() > maxMemoryEntries;
+            }
+        };
+        this.directory = directory;
+        this.maxDiskEntries = maxDiskEntries;
+        if(directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            LOGGER.log(Level.WARNING, "Cannot create feature selection cache directory {0}", directory);
+        }
+    }
+
+    public int[] get(String key) {
+        int[] selected;
+        synchronized (memory) {
+            selected = memory.get(key);
+        }
+        if(selected == null && directory != null) {
+            selected = readFromDisk(key);
+            if(selected != null) {
+                synchronized (memory) {
+                    memory.put(key, selected);
+                }
+            }
+        }
+        return selected == null ? null : selected.clone();
+    }
+
+    public void put(String key, int[] selected) {
+        synchronized (memory) {
+            memory.put(key, selected.clone());
+        }
+        if(directory != null) {
+            writeToDisk(key, selected);
+        }
+    }
+
+    /* concurrent requests for the same key wait for a single computation */
+    public int[] computeIfAbsent(String key, Callable<int[]> selection) throws Exception {
+        int[] selected = get(key);
+        if(selected != null) {
+            return selected;
+        }
+
+        CompletableFuture<int[]> future = new CompletableFuture<>();
+        CompletableFuture<int[]> running = inFlight.putIfAbsent(key, future);
+        if(running != null) {
+            try {
+                return running.get().clone();
+            } catch (ExecutionException e) {
+                throw (Exception) e.getCause();
+            }
+        }
+
+        try {
+            selected = get(key);
+            if(selected == null) {
+                selected = selection.call();
+                put(key, selected);
+            }
+            future.complete(selected);
+            return selected.clone();
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key);
+        }
+    }
+
+    private int[] readFromDisk(String key) {
+        Path path = new File(directory, key + EXTENSION).toPath();
+        try {
+            String content = new String(Files.readAllBytes(path), StandardCharsets.US_ASCII).trim();
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            if(content.isEmpty()) {
+                return new int[0];
+            }
+            return Arrays.stream(content.split(",")).mapToInt(Integer::parseInt).toArray();
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Ignoring unreadable feature selection cache entry " + path, e);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, int[] selected) {
+        Path path = new File(directory, key + EXTENSION).toPath();
+        String content = Arrays.stream(selected).mapToObj(String::valueOf).collect(Collectors.joining(","));
+        try {
+            Path temporary = Files.createTempFile(directory.toPath(), key, ".tmp");
+            Files.write(temporary, content.getBytes(StandardCharsets.US_ASCII));
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            evictFromDisk();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot write feature selection cache entry " + path, e);
+        }
+    }
+
+    private void evictFromDisk() throws IOException {
+        if(maxDiskEntries <= 0) {
+            return;
+        }
+        Path[] entries;
+        try(Stream<Path> files = Files.list(directory.toPath())) {
+            entries = files.filter(file -> file.getFileName().toString().endsWith(EXTENSION)).toArray(Path[]::new);
+        }
+        if(entries.length <= maxDiskEntries) {
+            return;
+        }
+        Arrays.sort(entries, Comparator.comparingLong(FeatureSelectionCache::lastModified));
+        for(int i = 0; i < entries.length - maxDiskEntries; i++) {
+            Files.deleteIfExists(entries[i]);
+        }
+    }
+
+    private static long lastModified(Path path) {
+        return path.toFile().lastModified();
+    }
+}
@@ -0,0 +1,8 @@
+package featureselection;
+
+public enum FeatureSelectionEngine {
+    /* CfsSubsetEval + BestFirst recomputed on every training set, cached by content */
+    WEKA_CFS,
+    /* IncrementalCorrelationSelection updated with the release that joins the training window */
+    INCREMENTAL_CORRELATION
+}
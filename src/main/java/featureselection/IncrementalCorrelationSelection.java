@@ -0,0 +1,174 @@
+package featureselection;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/*
+ * Correlation based feature selection over running sufficient statistics.
+ * Counts, sums and cross products of every attribute pair (class included, as 0/1) are updated with the rows that
+ * enter or leave the training window, so a selection costs O(new rows) plus a BestFirst search over the cached
+ * correlation matrix. Merits use the CFS formula with absolute Pearson correlations.
+ */
+public class IncrementalCorrelationSelection {
+    /* same defaults as weka.attributeSelection.BestFirst */
+    private static final int SEARCH_TERMINATION = 5;
+    private static final double MIN_IMPROVEMENT = 0.00001;
+
+    private final int numAttributes;
+    private final int classIndex;
+    private double count = 0;
+    private final double[] sums;
+    /* upper triangle, cross[i][j] with i <= j, the diagonal holds the sums of squares */
+    private final double[][] crossProducts;
+
+    public IncrementalCorrelationSelection(Instances header) {
+        this.numAttributes = header.numAttributes();
+        this.classIndex = header.classIndex();
+        this.sums = new double[numAttributes];
+        this.crossProducts = new double[numAttributes][numAttributes];
+    }
+
+    public double getCount() {
+        return count;
+    }
+
+    public void addInstances(Instances rows) {
+        update(rows, 1);
+    }
+
+    public void removeInstances(Instances rows) {
+        update(rows, -1);
+    }
+
+    private void update(Instances rows, int sign) {
+        double[] values = new double[numAttributes];
+        for(Instance row : rows) {
+            double weight = sign * row.weight();
+            for(int i = 0; i < numAttributes; i++) {
+                values[i] = row.value(i);
+            }
+            count += weight;
+            for(int i = 0; i < numAttributes; i++) {
+                double weighted = weight * values[i];
+                sums[i] += weighted;
+                double[] crossRow = crossProducts[i];
+                for(int j = i; j < numAttributes; j++) {
+                    crossRow[j] += weighted * values[j];
+                }
+            }
+        }
+    }
+
+    public double correlation(int first, int second) {
+        int i = Math.min(first, second);
+        int j = Math.max(first, second);
+        double covariance = crossProducts[i][j] - sums[i] * sums[j] / count;
+        double varianceI = crossProducts[i][i] - sums[i] * sums[i] / count;
+        double varianceJ = crossProducts[j][j] - sums[j] * sums[j] / count;
+        if(varianceI <= 0 || varianceJ <= 0) {
+            return 0;
+        }
+        return covariance / Math.sqrt(varianceI * varianceJ);
+    }
+
+    public double[][] correlationMatrix() {
+        double[][] matrix = new double[numAttributes][numAttributes];
+        for(int i = 0; i < numAttributes; i++) {
+            matrix[i][i] = 1;
+            for(int j = i + 1; j < numAttributes; j++) {
+                matrix[i][j] = Math.abs(correlation(i, j));
+                matrix[j][i] = matrix[i][j];
+            }
+        }
+        return matrix;
+    }
+
+    public static double merit(BitSet subset, double[][] correlations, int classIndex) {
+        double numerator = 0;
+        double denominator = 0;
+        for(int i = subset.nextSetBit(0); i >= 0; i = subset.nextSetBit(i + 1)) {
+            numerator += correlations[i][classIndex];
+            denominator += 1;
+            for(int j = subset.nextSetBit(i + 1); j >= 0; j = subset.nextSetBit(j + 1)) {
+                denominator += 2 * correlations[i][j];
+            }
+        }
+        if(denominator == 0) {
+            return 0;
+        }
+        return Math.abs(numerator / Math.sqrt(Math.abs(denominator)));
+    }
+
+    /* forward BestFirst from the empty set, returns the sorted selected indices followed by the class index */
+    public int[] selectAttributes() {
+        double[][] correlations = correlationMatrix();
+        PriorityQueue<ScoredSubset> open = new PriorityQueue<>();
+        Set<BitSet> visited = new HashSet<>();
+
+        ScoredSubset best = new ScoredSubset(new BitSet(numAttributes), 0, 0);
+        open.add(best);
+        visited.add(best.subset);
+        long order = 1;
+        int stale = 0;
+
+        while(!open.isEmpty() && stale < SEARCH_TERMINATION) {
+            ScoredSubset current = open.poll();
+            boolean improved = false;
+            for(int attribute = 0; attribute < numAttributes; attribute++) {
+                if(attribute == classIndex || current.subset.get(attribute)) {
+                    continue;
+                }
+                BitSet child = (BitSet) current.subset.clone();
+                child.set(attribute);
+                if(!visited.add(child)) {
+                    continue;
+                }
+                ScoredSubset scored = new ScoredSubset(child, merit(child, correlations, classIndex), order++);
+                open.add(scored);
+                if(scored.merit - best.merit > MIN_IMPROVEMENT) {
+                    best = scored;
+                    improved = true;
+                }
+            }
+            stale = improved ? 0 : stale + 1;
+        }
+
+        List<Integer> selected = new ArrayList<>();
+        for(int i = best.subset.nextSetBit(0); i >= 0; i = best.subset.nextSetBit(i + 1)) {
+            selected.add(i);
+        }
+        int[] indices = new int[selected.size() + 1];
+        for(int i = 0; i < selected.size(); i++) {
+            indices[i] = selected.get(i);
+        }
+        indices[selected.size()] = classIndex;
+        Arrays.sort(indices, 0, selected.size());
+        return indices;
+    }
+
+    private static class ScoredSubset implements Comparable<ScoredSubset> {
+        private final BitSet subset;
+        private final double merit;
+        private final long order;
+
+        private ScoredSubset(BitSet subset, double merit, long order) {
+            this.subset = subset;
+            this.merit = merit;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(ScoredSubset other) {
+            int byMerit = Double.compare(other.merit, merit);
+            return byMerit != 0 ? byMerit : Long.compare(order, other.order);
+        }
+    }
+}
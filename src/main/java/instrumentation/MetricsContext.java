@@ -0,0 +1,38 @@
+package instrumentation;
+
+/* what the stages running on a thread are attributed to */
+public class MetricsContext {
+    private final MetricsRecorder recorder;
+    private final String dataset;
+    private final int step;
+    private final String classifier;
+    private final String technique;
+
+    public MetricsContext(MetricsRecorder recorder, String dataset, int step, String classifier, String technique) {
+        this.recorder = recorder;
+        this.dataset = dataset;
+        this.step = step;
+        this.classifier = classifier;
+        this.technique = technique;
+    }
+
+    public MetricsRecorder getRecorder() {
+        return recorder;
+    }
+
+    public String getDataset() {
+        return dataset;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    public String getClassifier() {
+        return classifier;
+    }
+
+    public String getTechnique() {
+        return technique;
+    }
+}
@@ -0,0 +1,66 @@
+package instrumentation;
+
+import com.opencsv.CSVWriter;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class MetricsRecorder {
+    private static final String[] HEADER = {"dataset", "step", "classifier", "technique", "stage", "wall ms", "cpu ms", "allocated MB"};
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    private final ConcurrentLinkedQueue<StageRecord> records = new ConcurrentLinkedQueue<>();
+
+    public void record(StageRecord stageRecord) {
+        records.add(stageRecord);
+    }
+
+    public List<StageRecord> getRecords() {
+        return new ArrayList<>(records);
+    }
+
+    public void writeCsv(String outputFile) throws IOException {
+        try(CSVWriter csvWriter = new CSVWriter(new FileWriter(outputFile))) {
+            csvWriter.writeNext(HEADER);
+            for(StageRecord stageRecord : records) {
+                csvWriter.writeNext(new String[] {stageRecord.getDataset(), String.valueOf(stageRecord.getStep()),
+                        emptyIfNull(stageRecord.getClassifier()), emptyIfNull(stageRecord.getTechnique()), stageRecord.getStage().name(),
+                        String.valueOf(stageRecord.getWallNanos() / NANOS_PER_MILLI), String.valueOf(stageRecord.getCpuNanos() / NANOS_PER_MILLI),
+                        String.valueOf(stageRecord.getAllocatedBytes() / BYTES_PER_MB)});
+            }
+        }
+    }
+
+    /* totals per stage and classifier, one line each */
+    public String summary() {
+        Map<String, long[]> totals = new TreeMap<>();
+        for(StageRecord stageRecord : records) {
+            String classifier = stageRecord.getClassifier() == null ? "-" : stageRecord.getClassifier();
+            String key = String.format("%-18s %-14s", stageRecord.getStage(), classifier);
+            long[] total = totals.computeIfAbsent(key, k -> new long[4]);
+            total[0]++;
+            total[1] += stageRecord.getWallNanos();
+            total[2] += stageRecord.getCpuNanos();
+            total[3] += stageRecord.getAllocatedBytes();
+        }
+
+        StringBuilder summary = new StringBuilder(String.format("%-18s %-14s %8s %12s %12s %14s%n", "stage", "classifier", "count", "wall ms",
+                "cpu ms", "allocated MB"));
+        for(Map.Entry<String, long[]> entry : totals.entrySet()) {
+            long[] total = entry.getValue();
+            summary.append(String.format("%s %8d %12.1f %12.1f %14.1f%n", entry.getKey(), total[0], total[1] / NANOS_PER_MILLI,
+                    total[2] / NANOS_PER_MILLI, total[3] / BYTES_PER_MB));
+        }
+        return summary.toString();
+    }
+
+    private static String emptyIfNull(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,10 @@
+package instrumentation;
+
+public enum Stage {
+    PARSE,
+    FILTER,
+    FEATURE_SELECTION,
+    BALANCING,
+    TRAIN,
+    EVALUATE
+}
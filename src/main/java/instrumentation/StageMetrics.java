@@ -0,0 +1,55 @@
+package instrumentation;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/*
+ * Entry point of the stage instrumentation. Code around a stage does
+ *     StageTimer timer = StageMetrics.start(Stage.TRAIN);
+ *     try { ... } finally { timer.stop(); }
+ * and the timing is attributed to the context of the current thread. Without a context, start returns a shared
+ * timer that does nothing, so disabled instrumentation costs a thread local lookup per stage.
+ */
+public class StageMetrics {
+    private static final ThreadLocal<MetricsContext> CONTEXT = new ThreadLocal<>();
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final com.sun.management.ThreadMXBean ALLOCATION_MX_BEAN = THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean ?
+            (com.sun.management.ThreadMXBean) THREAD_MX_BEAN : null;
+    private static final StageTimer NOOP = new StageTimer(null, null, 0, 0, 0);
+
+    private StageMetrics() {}
+
+    public static MetricsContext getContext() {
+        return CONTEXT.get();
+    }
+
+    /* returns the previous context, to be restored when the instrumented work is done */
+    public static MetricsContext setContext(MetricsContext context) {
+        MetricsContext previous = CONTEXT.get();
+        if(context == null) {
+            CONTEXT.remove();
+        } else {
+            CONTEXT.set(context);
+        }
+        return previous;
+    }
+
+    public static StageTimer start(Stage stage) {
+        MetricsContext context = CONTEXT.get();
+        if(context == null) {
+            return NOOP;
+        }
+        return new StageTimer(context, stage, System.nanoTime(), cpuTime(), allocatedBytes());
+    }
+
+    static long cpuTime() {
+        return THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0;
+    }
+
+    static long allocatedBytes() {
+        if(ALLOCATION_MX_BEAN == null || !ALLOCATION_MX_BEAN.isThreadAllocatedMemorySupported()) {
+            return 0;
+        }
+        return ALLOCATION_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
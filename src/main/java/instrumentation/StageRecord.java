@@ -0,0 +1,56 @@
+package instrumentation;
+
+public class StageRecord {
+    private final String dataset;
+    private final int step;
+    private final String classifier;
+    private final String technique;
+    private final Stage stage;
+    private final long wallNanos;
+    private final long cpuNanos;
+    private final long allocatedBytes;
+
+    public StageRecord(String dataset, int step, String classifier, String technique, Stage stage, long wallNanos, long cpuNanos,
+                       long allocatedBytes) {
+        this.dataset = dataset;
+        this.step = step;
+        this.classifier = classifier;
+        this.technique = technique;
+        this.stage = stage;
+        this.wallNanos = wallNanos;
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public String getDataset() {
+        return dataset;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    public String getClassifier() {
+        return classifier;
+    }
+
+    public String getTechnique() {
+        return technique;
+    }
+
+    public Stage getStage() {
+        return stage;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
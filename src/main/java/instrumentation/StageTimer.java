@@ -0,0 +1,28 @@
+package instrumentation;
+
+public class StageTimer {
+    private final MetricsContext context;
+    private final Stage stage;
+    private final long startWall;
+    private final long startCpu;
+    private final long startAllocated;
+
+    StageTimer(MetricsContext context, Stage stage, long startWall, long startCpu, long startAllocated) {
+        this.context = context;
+        this.stage = stage;
+        this.startWall = startWall;
+        this.startCpu = startCpu;
+        this.startAllocated = startAllocated;
+    }
+
+    public void stop() {
+        if(context == null) {
+            return;
+        }
+        long wall = System.nanoTime() - startWall;
+        long cpu = StageMetrics.cpuTime() - startCpu;
+        long allocated = StageMetrics.allocatedBytes() - startAllocated;
+        context.getRecorder().record(new StageRecord(context.getDataset(), context.getStep(), context.getClassifier(), context.getTechnique(),
+                stage, wall, cpu, allocated));
+    }
+}
@@ -0,0 +1,92 @@
+package sharding;
+
+import utils.ProjectDescriptor;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Properties;
+
+/*
+ * steps in [fromStep, toStep) of the walk forward of a project; once claimed, the token of the claim and the partial
+ * file its rows are written to
+ */
+public class Shard {
+    private final String id;
+    private final ProjectDescriptor project;
+    private final int fromStep;
+    private final int toStep;
+    private final String claimToken;
+    private final String partialFile;
+
+    public Shard(String id, ProjectDescriptor project, int fromStep, int toStep) {
+        this(id, project, fromStep, toStep, null, null);
+    }
+
+    private Shard(String id, ProjectDescriptor project, int fromStep, int toStep, String claimToken, String partialFile) {
+        this.id = id;
+        this.project = project;
+        this.fromStep = fromStep;
+        this.toStep = toStep;
+        this.claimToken = claimToken;
+        this.partialFile = partialFile;
+    }
+
+    public Shard claimed(String claimToken, String partialFile) {
+        return new Shard(id, project, fromStep, toStep, claimToken, partialFile);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public ProjectDescriptor getProject() {
+        return project;
+    }
+
+    public int getFromStep() {
+        return fromStep;
+    }
+
+    public int getToStep() {
+        return toStep;
+    }
+
+    public String getClaimToken() {
+        return claimToken;
+    }
+
+    public String getPartialFile() {
+        return partialFile;
+    }
+
+    public void store(File file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("id", id);
+        properties.setProperty("datasetPath", project.getDatasetPath());
+        properties.setProperty("datasetName", project.getDatasetName());
+        properties.setProperty("releaseToRemoveFromTop", String.valueOf(project.getReleaseToRemoveFromTop()));
+        properties.setProperty("releaseToRemoveFromBottom", String.valueOf(project.getReleaseToRemoveFromBottom()));
+        properties.setProperty("outputFile", project.getOutputFile());
+        properties.setProperty("fromStep", String.valueOf(fromStep));
+        properties.setProperty("toStep", String.valueOf(toStep));
+        try(Writer writer = new FileWriter(file)) {
+            properties.store(writer, null);
+        }
+    }
+
+    public static Shard load(File file) throws IOException {
+        Properties properties = new Properties();
+        try(Reader reader = new FileReader(file)) {
+            properties.load(reader);
+        }
+        ProjectDescriptor project = new ProjectDescriptor(properties.getProperty("datasetPath"), properties.getProperty("datasetName"),
+                Integer.parseInt(properties.getProperty("releaseToRemoveFromTop")), Integer.parseInt(properties.getProperty("releaseToRemoveFromBottom")),
+                properties.getProperty("outputFile"));
+        return new Shard(properties.getProperty("id"), project, Integer.parseInt(properties.getProperty("fromStep")),
+                Integer.parseInt(properties.getProperty("toStep")));
+    }
+}
@@ -0,0 +1,151 @@
+package sharding;
+
+import utils.ProjectDescriptor;
+import walkforward.ReleaseIndex;
+import walkforward.WalkForwardConfig;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Splits the walk forward of several projects into shards of stepsPerShard steps, runs them on nWorkers worker JVMs
+ * through a WorkQueue and merges the partial result files of every project into its result file, in step order.
+ * Workers started by hand on other machines sharing the queue directory take shards as well; with nWorkers = 0 the
+ * coordinator only waits for them.
+ */
+public class ShardCoordinator {
+    private static final Logger LOGGER = Logger.getLogger(ShardCoordinator.class.getName());
+    private static final long POLL_MILLIS = 1000;
+
+    private final WalkForwardConfig config;
+    private final File queueDirectory;
+    private final int nWorkers;
+    private final int stepsPerShard;
+    private List<String> workerJvmOptions = new ArrayList<>();
+
+    public ShardCoordinator(WalkForwardConfig config, File queueDirectory, int nWorkers, int stepsPerShard) {
+        if(nWorkers < 0 || stepsPerShard < 1) {
+            throw new IllegalArgumentException("Invalid sharding: " + nWorkers + " workers, " + stepsPerShard + " steps per shard");
+        }
+        this.config = config;
+        this.queueDirectory = queueDirectory;
+        this.nWorkers = nWorkers;
+        this.stepsPerShard = stepsPerShard;
+    }
+
+    /* options of the worker JVMs, e.g. -Xmx4g */
+    public void setWorkerJvmOptions(List<String> workerJvmOptions) {
+        this.workerJvmOptions = new ArrayList<>(workerJvmOptions);
+    }
+
+    /* returns the projects that failed, the others are merged even when one of them fails */
+    public List<ProjectDescriptor> run(List<ProjectDescriptor> projects) throws IOException, InterruptedException {
+        WorkQueue queue = WorkQueue.open(queueDirectory);
+        if(!queue.isEmpty()) {
+            throw new IllegalStateException(queueDirectory + " already holds shards of another run");
+        }
+        queue.writeConfig(config);
+        List<List<Shard>> shards = new ArrayList<>();
+        int nShards = 0;
+        for(ProjectDescriptor project : projects) {
+            List<Shard> projectShards = createShards(project, nShards);
+            for(Shard shard : projectShards) {
+                queue.submit(shard);
+            }
+            shards.add(projectShards);
+            nShards += projectShards.size();
+        }
+        LOGGER.log(Level.INFO, "{0} shards of {1} projects in {2}", new Object[] {nShards, projects.size(), queueDirectory});
+
+        List<Process> workers = new ArrayList<>();
+        for(int w = 0; w < nWorkers; w++) {
+            workers.add(startWorker(queue));
+        }
+        try {
+            awaitShards(queue, workers);
+        } finally {
+            for(Process worker : workers) {
+                worker.destroy();
+            }
+        }
+
+        List<ProjectDescriptor> failed = new ArrayList<>();
+        for(int p = 0; p < projects.size(); p++) {
+            ProjectDescriptor project = projects.get(p);
+            if(shards.get(p).stream().anyMatch(queue::isFailed)) {
+                LOGGER.log(Level.SEVERE, "Some shards of {0} failed, see the log of the workers", project.getDatasetName());
+                failed.add(project);
+                continue;
+            }
+            merge(queue, shards.get(p), project.getOutputFile());
+        }
+        return failed;
+    }
+
+    private List<Shard> createShards(ProjectDescriptor project, int firstId) throws IOException {
+        int nReleases = ReleaseIndex.build(new File(project.getDatasetPath())).getNumberOfReleases()
+                - project.getReleaseToRemoveFromTop() - project.getReleaseToRemoveFromBottom();
+        /* the walk forward runs steps 1 to nReleases - 2, a project too short for any step still gets an empty shard */
+        int toLastStep = Math.max(1, nReleases - 1);
+        List<Shard> projectShards = new ArrayList<>();
+        for(int fromStep = 1; fromStep == 1 || fromStep < toLastStep; fromStep += stepsPerShard) {
+            String id = String.format("%06d", firstId + projectShards.size());
+            projectShards.add(new Shard(id, project, fromStep, Math.min(fromStep + stepsPerShard, toLastStep)));
+        }
+        return projectShards;
+    }
+
+    private Process startWorker(WorkQueue queue) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath());
+        command.addAll(workerJvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ShardWorker.class.getName());
+        command.add(queue.getDirectory().getPath());
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    /* a shard requeued after every local worker exited gets a new worker, remote workers are only waited for */
+    private void awaitShards(WorkQueue queue, List<Process> workers) throws IOException, InterruptedException {
+        while(!queue.isDrained()) {
+            int requeued = queue.requeueExpired(ShardWorker.LEASE_MILLIS);
+            if(requeued > 0) {
+                LOGGER.log(Level.WARNING, "{0} shards requeued after their lease expired", requeued);
+            }
+            if(nWorkers > 0 && queue.hasPending() && workers.stream().noneMatch(Process::isAlive)) {
+                workers.add(startWorker(queue));
+            }
+            Thread.sleep(POLL_MILLIS);
+        }
+    }
+
+    /* the header of the first partial file, then the rows of every partial file, each from the claim that completed it */
+    private static void merge(WorkQueue queue, List<Shard> shards, String outputFile) throws IOException {
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile))) {
+            boolean header = true;
+            for(Shard shard : shards) {
+                try(BufferedReader reader = new BufferedReader(new FileReader(queue.getCompletedPartialFile(shard)))) {
+                    String line = reader.readLine();
+                    if(line != null && header) {
+                        writer.write(line);
+                        writer.write('\n');
+                        header = false;
+                    }
+                    while((line = reader.readLine()) != null) {
+                        writer.write(line);
+                        writer.write('\n');
+                    }
+                }
+            }
+        }
+    }
+}
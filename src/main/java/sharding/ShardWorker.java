@@ -0,0 +1,95 @@
+package sharding;
+
+import featureselection.FeatureSelectionCache;
+import utils.ProjectDescriptor;
+import walkforward.WalkForwardConfig;
+import walkforward.WalkForwardRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Worker JVM: claims shards of a work queue until none is pending and runs each one in its own partial result file.
+ * Started by ShardCoordinator, or by hand on another machine that shares the queue directory:
+ *
+ *     java -cp <classpath> sharding.ShardWorker <queue directory>
+ */
+public class ShardWorker {
+    private static final Logger LOGGER = Logger.getLogger(ShardWorker.class.getName());
+    public static final long LEASE_MILLIS = 60_000;
+
+    private ShardWorker() {}
+
+    /* returns the number of shards that failed */
+    public static int work(WorkQueue queue) throws IOException {
+        int nFailed = 0;
+        ScheduledExecutorService leaseRenewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shard-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+        /* shared by the shards of this worker, created from the config of the first one */
+        FeatureSelectionCache featureSelectionCache = null;
+        try {
+            Shard shard;
+            while((shard = queue.claim()) != null) {
+                Shard claimed = shard;
+                AtomicBoolean lost = new AtomicBoolean(false);
+                ScheduledFuture<?> lease = leaseRenewer.scheduleAtFixedRate(() -> {
+                    if(!lost.get() && !queue.renewLease(claimed)) {
+                        lost.set(true);
+                        LOGGER.log(Level.INFO, "Shard {0} was requeued, another worker owns it now", claimed.getId());
+                    }
+                }, LEASE_MILLIS / 4, LEASE_MILLIS / 4, TimeUnit.MILLISECONDS);
+                boolean completed = false;
+                try {
+                    WalkForwardConfig config = queue.readConfig();
+                    if(featureSelectionCache == null) {
+                        featureSelectionCache = WalkForwardRunner.createFeatureSelectionCache(config);
+                    }
+                    run(config, shard, featureSelectionCache);
+                    completed = true;
+                } catch (Exception e) {
+                    LOGGER.log(Level.SEVERE, "Shard " + shard.getId() + " failed", e);
+                } finally {
+                    lease.cancel(false);
+                }
+                /* a lost claim is left to the worker that claimed the shard again, its rows are not merged */
+                if(completed && !queue.complete(shard)) {
+                    LOGGER.log(Level.INFO, "Shard {0} completed after its claim was lost, its rows are discarded", shard.getId());
+                } else if(!completed && queue.fail(shard)) {
+                    nFailed++;
+                }
+            }
+        } finally {
+            leaseRenewer.shutdownNow();
+        }
+        return nFailed;
+    }
+
+    private static void run(WalkForwardConfig config, Shard shard, FeatureSelectionCache featureSelectionCache) throws Exception {
+        ProjectDescriptor project = shard.getProject();
+        config.setStepRange(shard.getFromStep(), shard.getToStep());
+        /* a shard requeued after its worker died continues from the rows journaled in its partial file */
+        config.setResume(true);
+        LOGGER.log(Level.INFO, "Shard {0}: steps [{1}, {2}) of {3}", new Object[] {shard.getId(), shard.getFromStep(), shard.getToStep(),
+                project.getDatasetName()});
+        new WalkForwardRunner(config, null, featureSelectionCache).walkForward(project.getDatasetPath(), project.getReleaseToRemoveFromTop(),
+                project.getReleaseToRemoveFromBottom(), shard.getPartialFile(), project.getDatasetName());
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length != 1) {
+            throw new IllegalArgumentException("Usage: ShardWorker <queue directory>");
+        }
+        int nFailed = work(WorkQueue.open(new File(args[0])));
+        System.exit(nFailed == 0 ? 0 : 1);
+    }
+}
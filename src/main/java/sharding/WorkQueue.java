@@ -0,0 +1,259 @@
+package sharding;
+
+import walkforward.CheckpointJournal;
+import walkforward.WalkForwardConfig;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Directory of shard files shared by the coordinator and the workers, possibly on several machines.
+ * A shard moves pending -> claimed -> done or failed, and every move is an atomic rename: when two workers claim the
+ * same shard only one rename succeeds. Each claim gets a token of its own, in the name of the claimed file and of the
+ * partial result file, so a worker whose shard was requeued writes its own partial file and finds its claim gone when
+ * it completes. A worker renews its lease by touching its claimed file; the coordinator puts back in pending the
+ * shards whose file did not change for a lease on its own clock, because their worker died. A new claim of a requeued
+ * shard starts from the journaled rows of the previous claim.
+ */
+public class WorkQueue {
+    private static final Logger LOGGER = Logger.getLogger(WorkQueue.class.getName());
+    private static final String SHARD_EXTENSION = ".shard";
+    private static final String PARTIAL_EXTENSION = ".csv";
+    private static final String CONFIG_FILE = "config.properties";
+
+    private final File directory;
+    private final File pending;
+    private final File claimed;
+    private final File done;
+    private final File failed;
+    private final File partials;
+    /* claimed file name -> last modified time and the coordinator time it was first seen, for requeueExpired */
+    private final Map<String, long[]> leases = new HashMap<>();
+
+    private WorkQueue(File directory) {
+        this.directory = directory;
+        this.pending = new File(directory, "pending");
+        this.claimed = new File(directory, "claimed");
+        this.done = new File(directory, "done");
+        this.failed = new File(directory, "failed");
+        this.partials = new File(directory, "partials");
+    }
+
+    public static WorkQueue open(File directory) throws IOException {
+        WorkQueue queue = new WorkQueue(directory);
+        for(File subdirectory : new File[] {queue.pending, queue.claimed, queue.done, queue.failed, queue.partials}) {
+            Files.createDirectories(subdirectory.toPath());
+        }
+        return queue;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /* partial result file of a claim of the shard */
+    public String getPartialFile(String shardId, String claimToken) {
+        return new File(partials, shardId + "." + claimToken + PARTIAL_EXTENSION).getPath();
+    }
+
+    /* partial result file of the claim that completed the shard, null when it did not complete */
+    public String getCompletedPartialFile(Shard shard) {
+        String claimToken = findClaimToken(done, shard.getId());
+        return claimToken != null ? getPartialFile(shard.getId(), claimToken) : null;
+    }
+
+    public void writeConfig(WalkForwardConfig config) throws IOException {
+        File partial = new File(directory, CONFIG_FILE + ".tmp");
+        try(Writer writer = new FileWriter(partial)) {
+            config.toProperties().store(writer, null);
+        }
+        Files.move(partial.toPath(), new File(directory, CONFIG_FILE).toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public WalkForwardConfig readConfig() throws IOException {
+        Properties properties = new Properties();
+        try(Reader reader = new FileReader(new File(directory, CONFIG_FILE))) {
+            properties.load(reader);
+        }
+        return WalkForwardConfig.fromProperties(properties);
+    }
+
+    public void submit(Shard shard) throws IOException {
+        File partial = new File(directory, shard.getId() + SHARD_EXTENSION + ".tmp");
+        shard.store(partial);
+        Files.move(partial.toPath(), new File(pending, shard.getId() + SHARD_EXTENSION).toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /* the first pending shard this process could rename to claimed, with the token of the claim; null when none is left */
+    public Shard claim() throws IOException {
+        for(File file : list(pending)) {
+            String shardId = file.getName().substring(0, file.getName().length() - SHARD_EXTENSION.length());
+            String claimToken = UUID.randomUUID().toString();
+            File claimedFile = new File(claimed, shardId + "." + claimToken + SHARD_EXTENSION);
+            try {
+                Files.move(file.toPath(), claimedFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (NoSuchFileException e) {
+                /* claimed by another worker */
+                continue;
+            }
+            claimedFile.setLastModified(System.currentTimeMillis());
+            String partialFile = getPartialFile(shardId, claimToken);
+            copyLatestPartial(shardId, partialFile);
+            return Shard.load(claimedFile).claimed(claimToken, partialFile);
+        }
+        return null;
+    }
+
+    /* false when the claim was lost: the shard was requeued, the worker can finish but its rows are not used */
+    public boolean renewLease(Shard shard) {
+        return claimedFile(shard).setLastModified(System.currentTimeMillis());
+    }
+
+    /* false when the claim was lost and the shard belongs to another claim */
+    public boolean complete(Shard shard) throws IOException {
+        if(!move(claimedFile(shard), new File(done, claimedFile(shard).getName()))) {
+            return false;
+        }
+        deleteOtherPartials(shard);
+        return true;
+    }
+
+    /* false when the claim was lost and the shard belongs to another claim */
+    public boolean fail(Shard shard) throws IOException {
+        return move(claimedFile(shard), new File(failed, claimedFile(shard).getName()));
+    }
+
+    /*
+     * claimed shards whose file did not change for leaseMillis, measured on the clock of this process, go back to
+     * pending; the mtime is only compared with itself, so the clocks of the workers do not matter
+     */
+    public int requeueExpired(long leaseMillis) throws IOException {
+        long now = System.currentTimeMillis();
+        int requeued = 0;
+        Map<String, long[]> seenLeases = new HashMap<>();
+        for(File file : list(claimed)) {
+            long lastModified = file.lastModified();
+            long[] lease = leases.get(file.getName());
+            if(lease == null || lease[0] != lastModified) {
+                lease = new long[] {lastModified, now};
+            }
+            if(now - lease[1] < leaseMillis) {
+                seenLeases.put(file.getName(), lease);
+                continue;
+            }
+            String shardId = file.getName().substring(0, file.getName().indexOf('.'));
+            if(move(file, new File(pending, shardId + SHARD_EXTENSION))) {
+                requeued++;
+            }
+        }
+        leases.clear();
+        leases.putAll(seenLeases);
+        return requeued;
+    }
+
+    public boolean hasPending() {
+        return !list(pending).isEmpty();
+    }
+
+    public boolean isDrained() {
+        return list(pending).isEmpty() && list(claimed).isEmpty();
+    }
+
+    /* partial files count as well, a new run must not resume the rows of another one */
+    public boolean isEmpty() {
+        String[] partialFiles = partials.list();
+        return isDrained() && list(done).isEmpty() && list(failed).isEmpty() && (partialFiles == null || partialFiles.length == 0);
+    }
+
+    public boolean isFailed(Shard shard) {
+        return findClaimToken(failed, shard.getId()) != null;
+    }
+
+    /* false when the source is gone, moved by another process */
+    private static boolean move(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private File claimedFile(Shard shard) {
+        return new File(claimed, shard.getId() + "." + shard.getClaimToken() + SHARD_EXTENSION);
+    }
+
+    private static String findClaimToken(File subdirectory, String shardId) {
+        for(File file : list(subdirectory)) {
+            String name = file.getName();
+            if(name.startsWith(shardId + ".")) {
+                return name.substring(shardId.length() + 1, name.length() - SHARD_EXTENSION.length());
+            }
+        }
+        return null;
+    }
+
+    /*
+     * the journal and then the rows of the last partial file of the shard, so that every journaled row is copied;
+     * a row cut by the copy is dropped on resume
+     */
+    private void copyLatestPartial(String shardId, String partialFile) throws IOException {
+        File[] previous = partials.listFiles((dir, name) -> name.startsWith(shardId + ".") && name.endsWith(PARTIAL_EXTENSION));
+        if(previous == null || previous.length == 0) {
+            return;
+        }
+        File latest = Collections.max(Arrays.asList(previous), Comparator.comparingLong(File::lastModified));
+        File journal = CheckpointJournal.getJournalFile(latest.getPath());
+        if(!journal.isFile()) {
+            return;
+        }
+        try {
+            Files.copy(journal.toPath(), CheckpointJournal.getJournalFile(partialFile).toPath());
+            Files.copy(latest.toPath(), new File(partialFile).toPath());
+        } catch (NoSuchFileException e) {
+            /* removed by the claim that completed meanwhile, this claim starts over */
+            LOGGER.log(Level.FINE, "Partial file of shard {0} removed while copied", shardId);
+            Files.deleteIfExists(CheckpointJournal.getJournalFile(partialFile).toPath());
+        }
+    }
+
+    /* the partial files of the claims the shard lost, their worker may still be writing to them */
+    private void deleteOtherPartials(Shard shard) throws IOException {
+        String own = new File(shard.getPartialFile()).getName();
+        File[] files = partials.listFiles((dir, name) -> name.startsWith(shard.getId() + ".") && !name.startsWith(own));
+        if(files == null) {
+            return;
+        }
+        for(File file : files) {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    /* shard ids are zero padded, so the name order is the submission order */
+    private static List<File> list(File subdirectory) {
+        File[] files = subdirectory.listFiles((dir, name) -> name.endsWith(SHARD_EXTENSION));
+        if(files == null) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+}
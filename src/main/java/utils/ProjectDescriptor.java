@@ -0,0 +1,57 @@
+package utils;
+
+public class ProjectDescriptor {
+    private String datasetPath;
+    private String datasetName;
+    private int releaseToRemoveFromTop;
+    private int releaseToRemoveFromBottom;
+    private String outputFile;
+
+    public ProjectDescriptor(String datasetPath, String datasetName, int releaseToRemoveFromTop, int releaseToRemoveFromBottom, String outputFile) {
+        this.datasetPath = datasetPath;
+        this.datasetName = datasetName;
+        this.releaseToRemoveFromTop = releaseToRemoveFromTop;
+        this.releaseToRemoveFromBottom = releaseToRemoveFromBottom;
+        this.outputFile = outputFile;
+    }
+
+    public String getDatasetPath() {
+        return datasetPath;
+    }
+
+    public void setDatasetPath(String datasetPath) {
+        this.datasetPath = datasetPath;
+    }
+
+    public String getDatasetName() {
+        return datasetName;
+    }
+
+    public void setDatasetName(String datasetName) {
+        this.datasetName = datasetName;
+    }
+
+    public int getReleaseToRemoveFromTop() {
+        return releaseToRemoveFromTop;
+    }
+
+    public void setReleaseToRemoveFromTop(int releaseToRemoveFromTop) {
+        this.releaseToRemoveFromTop = releaseToRemoveFromTop;
+    }
+
+    public int getReleaseToRemoveFromBottom() {
+        return releaseToRemoveFromBottom;
+    }
+
+    public void setReleaseToRemoveFromBottom(int releaseToRemoveFromBottom) {
+        this.releaseToRemoveFromBottom = releaseToRemoveFromBottom;
+    }
+
+    public String getOutputFile() {
+        return outputFile;
+    }
+
+    public void setOutputFile(String outputFile) {
+        this.outputFile = outputFile;
+    }
+}
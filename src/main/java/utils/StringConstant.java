@@ -6,6 +6,9 @@ public class StringConstant {
     public static final String IBK = "IBk";
     public static final String YES = "yes";
     public static final String NO = "no";
+    public static final String OVERSAMPLING = "oversampling";
+    public static final String UNDERSAMPLING = "undersampling";
+    public static final String SMOTE = "SMOTE";
 
     private StringConstant(){}
 }
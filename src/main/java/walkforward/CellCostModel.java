@@ -0,0 +1,130 @@
+package walkforward;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/*
+ * Estimated single core time of a cell: a size that grows like the training cost of its classifier, times the
+ * nanoseconds per unit of size measured on the cells already run with the same classifier, technique and balancing.
+ * The measurements can be stored and loaded, so a run starts from the timings of the previous ones.
+ */
+public class CellCostModel {
+    /* nanoseconds per unit of size used until a kind of cell has been measured */
+    private static final double RANDOM_FOREST_PRIOR = 20_000;
+    private static final double NAIVE_BAYES_PRIOR = 2_000;
+    private static final double IBK_PRIOR = 200;
+    private static final double KD_TREE_PRIOR = 2_000;
+    private static final double INCREMENTAL_PRIOR = 500;
+
+    /* per key: measured nanoseconds and units of size */
+    private final Map<String, double[]> measurements = new HashMap<>();
+
+    public synchronized double estimateNanos(WalkForwardCell cell, CostSensitivityMode costSensitivityMode) {
+        double[] measured = measurements.get(keyOf(cell, costSensitivityMode));
+        double size = sizeOf(cell);
+        if(measured == null || measured[1] == 0) {
+            return size * prior(cell);
+        }
+        return size * measured[0] / measured[1];
+    }
+
+    /* cpuNanos of a random forest built on several slots is its wall time times the slots */
+    public synchronized void record(WalkForwardCell cell, CostSensitivityMode costSensitivityMode, double cpuNanos) {
+        double[] measured = measurements.computeIfAbsent(keyOf(cell, costSensitivityMode), key -> new double[2]);
+        measured[0] += cpuNanos;
+        measured[1] += sizeOf(cell);
+    }
+
+    public static CellCostModel load(File file) throws IOException {
+        CellCostModel costModel = new CellCostModel();
+        if(!file.isFile()) {
+            return costModel;
+        }
+        Properties properties = new Properties();
+        try(Reader reader = new FileReader(file)) {
+            properties.load(reader);
+        }
+        for(String key : properties.stringPropertyNames()) {
+            String[] values = properties.getProperty(key).split(",");
+            costModel.measurements.put(key, new double[] {Double.parseDouble(values[0]), Double.parseDouble(values[1])});
+        }
+        return costModel;
+    }
+
+    public synchronized void store(File file) throws IOException {
+        Properties properties = new Properties();
+        for(Map.Entry<String, double[]> entry : measurements.entrySet()) {
+            properties.setProperty(entry.getKey(), entry.getValue()[0] + "," + entry.getValue()[1]);
+        }
+        File partial = new File(file.getPath() + ".tmp");
+        try(Writer writer = new FileWriter(partial)) {
+            properties.store(writer, "nanoseconds,size per kind of cell");
+        }
+        Files.move(partial.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String keyOf(WalkForwardCell cell, CostSensitivityMode costSensitivityMode) {
+        String key = cell.getClassifierType().name() + "." + cell.getTechnique().name() + "." + cell.getBalancing().name();
+        if(cell.isKdTreeNearestNeighbours()) {
+            key += ".KD_TREE";
+        }
+        if(cell.hasIncrementalModel()) {
+            return key + ".INCREMENTAL";
+        }
+        if(cell.getTechnique().isCostSensitivity()) {
+            return key + "." + costSensitivityMode.name();
+        }
+        return key;
+    }
+
+    /*
+     * n log n for a forest, n for naive bayes, one distance per training and testing pair for IBk, a tree of the training
+     * rows and a descent of it per testing row for IBk over a KD-tree, the added rows when incremental
+     */
+    private static double sizeOf(WalkForwardCell cell) {
+        WalkForwardStep step = cell.getStep();
+        double trainingRows = step.getTrainingSet().numInstances();
+        double testingRows = step.getTestingSet().numInstances();
+        if(cell.hasIncrementalModel()) {
+            return step.getAddedRows() != null ? step.getAddedRows().numInstances() + testingRows : trainingRows + testingRows;
+        }
+        switch (cell.getClassifierType()) {
+            case RANDOM_FOREST:
+                return trainingRows * Math.log(trainingRows + 2) / Math.log(2) + testingRows;
+            case NAIVE_BAYES:
+                return trainingRows + testingRows;
+            case IBK:
+                if(cell.isKdTreeNearestNeighbours()) {
+                    return (trainingRows + testingRows) * Math.log(trainingRows + 2) / Math.log(2);
+                }
+                return trainingRows * testingRows + trainingRows;
+            default:
+                throw new IllegalStateException("Unknown classifier " + cell.getClassifierType());
+        }
+    }
+
+    private static double prior(WalkForwardCell cell) {
+        if(cell.hasIncrementalModel()) {
+            return INCREMENTAL_PRIOR;
+        }
+        switch (cell.getClassifierType()) {
+            case RANDOM_FOREST:
+                return RANDOM_FOREST_PRIOR;
+            case NAIVE_BAYES:
+                return NAIVE_BAYES_PRIOR;
+            case IBK:
+                return cell.isKdTreeNearestNeighbours() ? KD_TREE_PRIOR : IBK_PRIOR;
+            default:
+                throw new IllegalStateException("Unknown classifier " + cell.getClassifierType());
+        }
+    }
+}
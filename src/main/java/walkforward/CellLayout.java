@@ -0,0 +1,113 @@
+package walkforward;
+
+import balancing.Balancing;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * The cells of every step of a walk forward and the models they share, in the order the runner creates them: balancing,
+ * then technique, then classifier. The runner builds its cells from it and the StagePlan its stages, so both see the
+ * same cells.
+ */
+public class CellLayout {
+    private final List<Entry> entries;
+    private final List<SweepPoint> sweepPoints;
+
+    private CellLayout(List<Entry> entries, List<SweepPoint> sweepPoints) {
+        this.entries = entries;
+        this.sweepPoints = sweepPoints;
+    }
+
+    public static CellLayout of(WalkForwardConfig config) {
+        List<SweepPoint> sweepPoints = SweepPoint.of(config);
+        boolean reuseTrainedModels = !config.isSweep() && config.getCostSensitivityMode() == CostSensitivityMode.MINIMUM_EXPECTED_COST;
+        /* an updateable classifier cannot forget the release that leaves a sliding window */
+        boolean incrementalTraining = config.isIncrementalTraining() && config.getTrainingWindow() == 0;
+        List<Entry> entries = new ArrayList<>();
+        for(Balancing balancing : config.getBalancings()) {
+            /* entries of this balancing whose trained model is shared with their cost sensitive cell */
+            Map<Technique, Map<ClassifierType, Entry>> sharedModels = new EnumMap<>(Technique.class);
+            for(Technique technique : config.getTechniques()) {
+                if(!sweepPoints.isEmpty() && technique.isCostSensitivity()) {
+                    continue;
+                }
+                for(ClassifierType classifierType : config.getClassifierTypes()) {
+                    /* feature selection, balancing and cost sensitivity change the training data of every step, those cells are rebuilt */
+                    boolean incremental = incrementalTraining && technique == Technique.NONE && balancing == Balancing.NONE
+                            && classifierType.isUpdateable();
+                    Entry baseEntry = null;
+                    Map<ClassifierType, Entry> baseEntries = sharedModels.get(technique.withoutCostSensitivity());
+                    if(reuseTrainedModels && technique.isCostSensitivity() && baseEntries != null) {
+                        baseEntry = baseEntries.get(classifierType);
+                    }
+                    /* an incremental model keeps changing with the next steps, its cost sensitive cell trains its own */
+                    boolean sharesTrainedModel = reuseTrainedModels && !technique.isCostSensitivity() && !incremental;
+                    Entry entry = new Entry(balancing, technique, classifierType, incremental, baseEntry, sharesTrainedModel);
+                    if(sharesTrainedModel) {
+                        sharedModels.computeIfAbsent(technique, key -> new EnumMap<>(ClassifierType.class)).put(classifierType, entry);
+                    }
+                    entries.add(entry);
+                }
+            }
+        }
+        return new CellLayout(entries, sweepPoints);
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /* the rows of a cell: one per sweep point, or the cell row alone when there is no sweep */
+    public List<SweepPoint> getSweepPoints() {
+        return sweepPoints;
+    }
+
+    public static class Entry {
+        private final Balancing balancing;
+        private final Technique technique;
+        private final ClassifierType classifierType;
+        private final boolean incremental;
+        private final Entry baseEntry;
+        private final boolean sharesTrainedModel;
+
+        private Entry(Balancing balancing, Technique technique, ClassifierType classifierType, boolean incremental, Entry baseEntry,
+                      boolean sharesTrainedModel) {
+            this.balancing = balancing;
+            this.technique = technique;
+            this.classifierType = classifierType;
+            this.incremental = incremental;
+            this.baseEntry = baseEntry;
+            this.sharesTrainedModel = sharesTrainedModel;
+        }
+
+        public Balancing getBalancing() {
+            return balancing;
+        }
+
+        public Technique getTechnique() {
+            return technique;
+        }
+
+        public ClassifierType getClassifierType() {
+            return classifierType;
+        }
+
+        /* updated from the model of the previous step instead of trained again */
+        public boolean isIncremental() {
+            return incremental;
+        }
+
+        /* the cell whose trained model this minimum expected cost cell reuses, null when it trains its own */
+        public Entry getBaseEntry() {
+            return baseEntry;
+        }
+
+        /* trained once and handed to the minimum expected cost cells that name this entry as their base */
+        public boolean isTrainedModelShared() {
+            return sharesTrainedModel;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package walkforward;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Runs cells on a budget of nThreads cores, longest first.
+ * Cells wait in a priority queue ordered by step, then by the cost estimated by CellCostModel, the most expensive
+ * first, so the long random forests of a step do not start last and leave the other cores idle at its end. Earlier
+ * steps always go first: an incremental model waits for the cell of the previous step, and the writer needs them in
+ * order. A cost sensitive cell that reuses a base model is queued right behind it with the same cost.
+ *
+ * Every running cell holds one core; a cell building a random forest also takes the cores that no queued cell is
+ * waiting for as execution slots of the forest, so the threads of the pool and of the forests never exceed the budget.
+ */
+public class CellScheduler {
+    private static final Logger LOGGER = Logger.getLogger(CellScheduler.class.getName());
+    private static final Comparator<ScheduledCell> PRIORITY = Comparator.<ScheduledCell>comparingInt(task -> task.cell.getStep().getNumber())
+            .thenComparing(task -> -task.cost)
+            .thenComparingLong(task -> task.sequence);
+
+    private final int cores;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore freeCores;
+    private final CellCostModel costModel;
+    private final File costModelFile;
+    private final CostSensitivityMode costSensitivityMode;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public CellScheduler(WalkForwardConfig config) {
+        this.cores = config.getnThreads();
+        this.executor = new ThreadPoolExecutor(cores, cores, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>());
+        /* with every thread started, each cell goes through the queue and its priority */
+        executor.prestartAllCoreThreads();
+        this.freeCores = new Semaphore(cores, true);
+        this.costModelFile = config.getCostModelFile();
+        this.costSensitivityMode = config.getCostSensitivityMode();
+        this.costModel = loadCostModel(costModelFile);
+    }
+
+    private static CellCostModel loadCostModel(File costModelFile) {
+        if(costModelFile == null) {
+            return new CellCostModel();
+        }
+        try {
+            return CellCostModel.load(costModelFile);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Cannot read the cell timings of " + costModelFile + ", starting from the defaults", e);
+            return new CellCostModel();
+        }
+    }
+
+    /* the cells of one step, with every base cell before its dependents; the futures are in the order of the cells */
+    public List<Future<ResultMetrics>> submit(List<WalkForwardCell> cells) {
+        List<ScheduledCell> tasks = new ArrayList<>(cells.size());
+        for(WalkForwardCell cell : cells) {
+            double cost = costModel.estimateNanos(cell, costSensitivityMode);
+            if(cell.hasBaseModel()) {
+                cost = findBaseCost(tasks, cell, cost);
+            }
+            tasks.add(new ScheduledCell(cell, cost, sequence.getAndIncrement()));
+        }
+        /* queued in priority order, so an idle thread cannot take a cheap cell before an expensive one is queued */
+        List<ScheduledCell> byPriority = new ArrayList<>(tasks);
+        byPriority.sort(PRIORITY);
+        for(ScheduledCell task : byPriority) {
+            executor.execute(task);
+        }
+        return new ArrayList<>(tasks);
+    }
+
+    private static double findBaseCost(List<ScheduledCell> tasks, WalkForwardCell cell, double cost) {
+        Technique baseTechnique = cell.getTechnique().withoutCostSensitivity();
+        for(ScheduledCell task : tasks) {
+            WalkForwardCell candidate = task.cell;
+            if(candidate.getStep() == cell.getStep() && candidate.getClassifierType() == cell.getClassifierType()
+                    && candidate.getBalancing() == cell.getBalancing() && candidate.getTechnique() == baseTechnique) {
+                return task.cost;
+            }
+        }
+        return cost;
+    }
+
+    private ResultMetrics runCell(WalkForwardCell cell) throws InterruptedException {
+        freeCores.acquire();
+        int spareCores = 0;
+        try {
+            if(cell.buildsRandomForest()) {
+                spareCores = acquireSpareCores();
+                cell.setExecutionSlots(1 + spareCores);
+            }
+            ResultMetrics metrics = cell.call();
+            if(metrics != null) {
+                costModel.record(cell, costSensitivityMode, (double) cell.getElapsedNanos() * cell.getExecutionSlots());
+            }
+            return metrics;
+        } finally {
+            freeCores.release(1 + spareCores);
+        }
+    }
+
+    /* free cores beyond those the queued cells will take */
+    private int acquireSpareCores() {
+        int spareCores = Math.min(freeCores.availablePermits() - executor.getQueue().size(), cores - 1);
+        for(int n = spareCores; n > 0; n--) {
+            if(freeCores.tryAcquire(n)) {
+                return n;
+            }
+        }
+        return 0;
+    }
+
+    /* cells of a walk forward that failed: the queued ones are dropped from the queue, the running ones finish */
+    public void cancel(Collection<Future<ResultMetrics>> futures) {
+        for(Future<ResultMetrics> future : futures) {
+            future.cancel(false);
+        }
+        executor.purge();
+    }
+
+    public void saveCostModel() {
+        if(costModelFile == null) {
+            return;
+        }
+        try {
+            costModel.store(costModelFile);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot save the cell timings to " + costModelFile, e);
+        }
+    }
+
+    public void shutdownNow() {
+        executor.shutdownNow();
+    }
+
+    private class ScheduledCell extends FutureTask<ResultMetrics> implements Comparable<ScheduledCell> {
+        private final WalkForwardCell cell;
+        private final double cost;
+        private final long sequence;
+
+        private ScheduledCell(WalkForwardCell cell, double cost, long sequence) {
+            super(() -> runCell(cell));
+            this.cell = cell;
+            this.cost = cost;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(ScheduledCell other) {
+            return PRIORITY.compare(this, other);
+        }
+    }
+}
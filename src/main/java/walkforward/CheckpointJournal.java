@@ -0,0 +1,192 @@
+package walkforward;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.CSVWriter;
+import com.opencsv.exceptions.CsvMalformedLineException;
+import com.opencsv.exceptions.CsvValidationException;
+import utils.CSVRow;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * One line per (dataset, step, classifier, balancing, feature selection, cost sensitivity) cell whose result row
+ * has been flushed to the result file. ResultSink appends the keys only after the rows are on disk, so on resume
+ * every journaled cell is in the result file and every other row can be dropped, as well as a last row or journal line
+ * cut by a crash. The journal is deleted once the run completes.
+ */
+public class CheckpointJournal implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(CheckpointJournal.class.getName());
+    private static final String SEPARATOR = "\t";
+    private static final int[] KEY_COLUMNS = {0, 1, 5, 6, 7, 8};
+
+    private final File file;
+    private final Set<String> completed;
+    private final BufferedWriter writer;
+
+    private CheckpointJournal(File file, Set<String> completed, boolean append) throws IOException {
+        this.file = file;
+        this.completed = completed;
+        this.writer = new BufferedWriter(new FileWriter(file, append));
+    }
+
+    public static File getJournalFile(String outputFile) {
+        return new File(outputFile + ".journal");
+    }
+
+    /* starts a new run: truncates the result file to its header and empties the journal */
+    public static CheckpointJournal create(String outputFile) throws IOException {
+        WalkForwardUtils.writeCSVHeader(outputFile);
+        return new CheckpointJournal(getJournalFile(outputFile), new HashSet<>(), false);
+    }
+
+    /*
+     * reloads the journal and keeps in the result file only the rows of journaled cells, in their original order; the
+     * rows of the resumed run are appended after them until complete puts them back in order
+     */
+    public static CheckpointJournal resume(String outputFile) throws IOException, CsvValidationException {
+        File journalFile = getJournalFile(outputFile);
+        File resultFile = new File(outputFile);
+        if(!journalFile.isFile() || !resultFile.isFile()) {
+            return create(outputFile);
+        }
+
+        Set<String> journaled = new HashSet<>();
+        try(BufferedReader reader = new BufferedReader(new FileReader(journalFile))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                if(!line.isEmpty()) {
+                    journaled.add(line);
+                }
+            }
+        }
+
+        Set<String> completed = new HashSet<>();
+        File compacted = new File(outputFile + ".resume");
+        try(CSVReader csvReader = new CSVReaderBuilder(new FileReader(resultFile)).build();
+            CSVWriter csvWriter = new CSVWriter(new FileWriter(compacted))) {
+            String[] header = csvReader.readNext();
+            if(header != null) {
+                csvWriter.writeNext(header);
+            }
+            String[] row;
+            while((row = readRow(csvReader, resultFile)) != null) {
+                if(header != null && row.length != header.length) {
+                    /* a row cut by a crash was never journaled, its cell runs again */
+                    LOGGER.log(Level.WARNING, "Incomplete row dropped from {0}: {1}", new Object[] {resultFile, String.join(",", row)});
+                    continue;
+                }
+                String key = keyOf(row);
+                if(journaled.contains(key) && completed.add(key)) {
+                    csvWriter.writeNext(row);
+                }
+            }
+        }
+        Files.move(compacted.toPath(), resultFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        /* rewrite the journal too, so that it only lists rows that survived the compaction */
+        try(BufferedWriter journalWriter = new BufferedWriter(new FileWriter(journalFile))) {
+            for(String key : completed) {
+                journalWriter.write(key);
+                journalWriter.newLine();
+            }
+        }
+        return new CheckpointJournal(journalFile, completed, true);
+    }
+
+    /*
+     * ends a run whose every row is in the result file by deleting its journal. A resumed run wrote its rows after
+     * the ones kept on resume: given rowOrder, the keys in the order of a run that was never interrupted, the result
+     * file is first rewritten in that order, rows of other keys last.
+     */
+    public static void complete(String outputFile, List<String> rowOrder) throws IOException, CsvValidationException {
+        if(rowOrder != null) {
+            File resultFile = new File(outputFile);
+            Map<String, String[]> rows = new LinkedHashMap<>();
+            File ordered = new File(outputFile + ".resume");
+            try(CSVReader csvReader = new CSVReaderBuilder(new FileReader(resultFile)).build();
+                CSVWriter csvWriter = new CSVWriter(new FileWriter(ordered))) {
+                String[] header = csvReader.readNext();
+                if(header != null) {
+                    csvWriter.writeNext(header);
+                }
+                String[] row;
+                while((row = csvReader.readNext()) != null) {
+                    rows.putIfAbsent(keyOf(row), row);
+                }
+                for(String key : rowOrder) {
+                    String[] orderedRow = rows.remove(key);
+                    if(orderedRow != null) {
+                        csvWriter.writeNext(orderedRow);
+                    }
+                }
+                for(String[] otherRow : rows.values()) {
+                    csvWriter.writeNext(otherRow);
+                }
+            }
+            Files.move(ordered.toPath(), resultFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.deleteIfExists(getJournalFile(outputFile).toPath());
+    }
+
+    /* null at the end of the file, also when the file ends inside a quoted field cut by a crash */
+    private static String[] readRow(CSVReader csvReader, File resultFile) throws IOException, CsvValidationException {
+        try {
+            return csvReader.readNext();
+        } catch (CsvMalformedLineException e) {
+            LOGGER.log(Level.WARNING, "Unterminated last row dropped from {0}", resultFile);
+            return null;
+        }
+    }
+
+    public static String keyOf(CSVRow csvRow) {
+        return String.join(SEPARATOR, csvRow.getDataset(), String.valueOf(csvRow.getnTrainingRelease()), csvRow.getClassifier(),
+                csvRow.getBalancing(), csvRow.getFeatureSelection(), csvRow.getCostSensitivity());
+    }
+
+    private static String keyOf(String[] resultRow) {
+        String[] key = new String[KEY_COLUMNS.length];
+        for(int i = 0; i < KEY_COLUMNS.length; i++) {
+            key[i] = resultRow[KEY_COLUMNS[i]];
+        }
+        return String.join(SEPARATOR, key);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public synchronized boolean isCompleted(CSVRow csvRow) {
+        return completed.contains(keyOf(csvRow));
+    }
+
+    /* the rows must already be flushed to the result file */
+    public synchronized void record(List<CSVRow> csvRows) throws IOException {
+        for(CSVRow csvRow : csvRows) {
+            String key = keyOf(csvRow);
+            completed.add(key);
+            writer.write(key);
+            writer.newLine();
+        }
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,90 @@
+package walkforward;
+
+import utils.StringConstant;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.bayes.NaiveBayes;
+import weka.classifiers.bayes.NaiveBayesUpdateable;
+import weka.classifiers.lazy.IBk;
+import weka.classifiers.trees.RandomForest;
+import weka.core.Utils;
+
+public enum ClassifierType {
+    RANDOM_FOREST(StringConstant.RANDOM_FOREST),
+    NAIVE_BAYES(StringConstant.NAIVE_BAYES),
+    IBK(StringConstant.IBK);
+
+    private final String label;
+
+    ClassifierType(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public AbstractClassifier newClassifier(long seed) {
+        return newClassifier(seed, 1, null);
+    }
+
+    /*
+     * executionSlots threads build the trees of a random forest, the other classifiers use one.
+     * options are Weka command line options, applied before the seed and the slots, which they cannot override.
+     */
+    public AbstractClassifier newClassifier(long seed, int executionSlots, String options) {
+        return newClassifier(seed, executionSlots, options, false);
+    }
+
+    /* kdTree replaces the linear search of IBk with a KdTreeNearestNeighbours, which gives the same predictions */
+    public AbstractClassifier newClassifier(long seed, int executionSlots, String options, boolean kdTree) {
+        switch (this) {
+            case RANDOM_FOREST:
+                RandomForest randomForest = new RandomForest();
+                setOptions(randomForest, options);
+                randomForest.setSeed((int) seed);
+                randomForest.setNumExecutionSlots(executionSlots);
+                return randomForest;
+            case NAIVE_BAYES:
+                return setOptions(new NaiveBayes(), options);
+            case IBK:
+                return setOptions(kdTree ? new KdTreeNearestNeighbours() : new IBk(), options);
+            default:
+                throw new IllegalStateException("Unknown classifier " + this);
+        }
+    }
+
+    public boolean isUpdateable() {
+        return this == NAIVE_BAYES || this == IBK;
+    }
+
+    public AbstractClassifier newUpdateableClassifier() {
+        return newUpdateableClassifier(null);
+    }
+
+    public AbstractClassifier newUpdateableClassifier(String options) {
+        return newUpdateableClassifier(options, false);
+    }
+
+    public AbstractClassifier newUpdateableClassifier(String options, boolean kdTree) {
+        switch (this) {
+            case NAIVE_BAYES:
+                return setOptions(new NaiveBayesUpdateable(), options);
+            case IBK:
+                return setOptions(kdTree ? new KdTreeNearestNeighbours() : new IBk(), options);
+            default:
+                throw new IllegalStateException(label + " is not updateable");
+        }
+    }
+
+    private AbstractClassifier setOptions(AbstractClassifier classifier, String options) {
+        if(options == null) {
+            return classifier;
+        }
+        try {
+            classifier.setOptions(Utils.splitOptions(options));
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid options for " + label + ": " + options, e);
+        }
+        return classifier;
+    }
+}
@@ -0,0 +1,194 @@
+package walkforward;
+
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Binary column store of the dataset metrics, read back through memory mapped buffers.
+ *
+ * Layout: magic, version, number of metric columns, rows and releases; the row and buggy prefix sums of the release
+ * index; the release names; then every metric column as rows doubles and the buggy column as rows bytes, each
+ * section aligned to 8 bytes. Selecting a range of releases is an offset computation, nothing is rewritten.
+ */
+public class ColumnarDataset implements AutoCloseable {
+    public static final String EXTENSION = ".columns";
+    private static final int MAGIC = 0x44534143;
+    private static final int VERSION = 1;
+
+    private final FileChannel channel;
+    private final ReleaseIndex releaseIndex;
+    private final DoubleBuffer[] metrics;
+    private final MappedByteBuffer buggy;
+
+    private ColumnarDataset(FileChannel channel, ReleaseIndex releaseIndex, DoubleBuffer[] metrics, MappedByteBuffer buggy) {
+        this.channel = channel;
+        this.releaseIndex = releaseIndex;
+        this.metrics = metrics;
+        this.buggy = buggy;
+    }
+
+    /* true when the binary file is missing or older than the CSV it was converted from */
+    public static boolean isStale(File csv, File binary) {
+        return !binary.isFile() || binary.lastModified() < csv.lastModified();
+    }
+
+    /*
+     * Two passes over the CSV: the first builds the release index, which sizes the file, the second parses every
+     * row straight into the mapped columns, so the conversion only keeps the index and the parser buffer in memory.
+     * The file is written under a temporary name and renamed, so processes sharing the dataset never open a partial one.
+     */
+    public static void convert(File csv, File binary) throws IOException {
+        ReleaseIndex releaseIndex = ReleaseIndex.build(csv);
+        int nRows = releaseIndex.getTotalInstances();
+        int nReleases = releaseIndex.getNumberOfReleases();
+        int nMetrics = DatasetLoader.getNumberOfMetrics();
+
+        byte[][] names = new byte[nReleases][];
+        long headerSize = 5L * Integer.BYTES + 2L * (nReleases + 1) * Integer.BYTES;
+        for(int r = 0; r < nReleases; r++) {
+            names[r] = releaseIndex.getRelease(r).getBytes(StandardCharsets.UTF_8);
+            headerSize += Short.BYTES + names[r].length;
+        }
+        long columnsOffset = align(headerSize);
+        long buggyOffset = columnsOffset + (long) nMetrics * nRows * Double.BYTES;
+        long fileSize = buggyOffset + nRows;
+
+        File partial = File.createTempFile(binary.getName(), ".tmp", binary.getAbsoluteFile().getParentFile());
+        try(FileChannel output = FileChannel.open(partial.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+            DatasetParser parser = new DatasetParser(csv)) {
+            MappedByteBuffer header = output.map(FileChannel.MapMode.READ_WRITE, 0, columnsOffset);
+            header.putInt(MAGIC).putInt(VERSION).putInt(nMetrics).putInt(nRows).putInt(nReleases);
+            for(int r = 0; r <= nReleases; r++) {
+                header.putInt(r == nReleases ? nRows : releaseIndex.getReleaseOffset(r));
+            }
+            for(int r = 0; r <= nReleases; r++) {
+                header.putInt(releaseIndex.getBuggyCount(0, r));
+            }
+            for(byte[] name : names) {
+                header.putShort((short) name.length).put(name);
+            }
+
+            MappedByteBuffer[] columns = new MappedByteBuffer[nMetrics];
+            DoubleBuffer[] values = new DoubleBuffer[nMetrics];
+            for(int c = 0; c < nMetrics; c++) {
+                columns[c] = output.map(FileChannel.MapMode.READ_WRITE, columnsOffset + (long) c * nRows * Double.BYTES,
+                        (long) nRows * Double.BYTES);
+                values[c] = columns[c].asDoubleBuffer();
+            }
+            MappedByteBuffer buggyColumn = output.map(FileChannel.MapMode.READ_WRITE, buggyOffset, nRows);
+            while(parser.next()) {
+                for(int c = 0; c < nMetrics; c++) {
+                    values[c].put(parser.getMetric(c));
+                }
+                buggyColumn.put((byte) (parser.isBuggy() ? 1 : 0));
+            }
+            if(parser.getRow() + 1 != nRows) {
+                throw new IOException(csv.getName() + " changed while it was converted");
+            }
+            for(MappedByteBuffer column : columns) {
+                column.force();
+            }
+            header.force();
+            buggyColumn.force();
+            output.truncate(fileSize);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partial.toPath());
+            throw e;
+        }
+        Files.move(partial.toPath(), binary.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public static ColumnarDataset open(File binary) throws IOException {
+        FileChannel channel = FileChannel.open(binary.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer counts = ByteBuffer.allocate(5 * Integer.BYTES);
+            channel.read(counts, 0);
+            counts.flip();
+            if(counts.getInt() != MAGIC || counts.getInt() != VERSION) {
+                throw new IOException(binary + " is not a columnar dataset of version " + VERSION);
+            }
+            int nMetrics = counts.getInt();
+            int nRows = counts.getInt();
+            int nReleases = counts.getInt();
+
+            long columnsOffset = channel.size() - (long) nMetrics * nRows * Double.BYTES - nRows;
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, columnsOffset);
+            header.position(counts.capacity());
+            int[] rowOffsets = new int[nReleases + 1];
+            int[] buggyOffsets = new int[nReleases + 1];
+            for(int r = 0; r <= nReleases; r++) {
+                rowOffsets[r] = header.getInt();
+            }
+            for(int r = 0; r <= nReleases; r++) {
+                buggyOffsets[r] = header.getInt();
+            }
+            String[] releases = new String[nReleases];
+            for(int r = 0; r < nReleases; r++) {
+                byte[] name = new byte[header.getShort()];
+                header.get(name);
+                releases[r] = new String(name, StandardCharsets.UTF_8);
+            }
+
+            DoubleBuffer[] metrics = new DoubleBuffer[nMetrics];
+            for(int c = 0; c < nMetrics; c++) {
+                metrics[c] = channel.map(FileChannel.MapMode.READ_ONLY, columnsOffset + (long) c * nRows * Double.BYTES,
+                        (long) nRows * Double.BYTES).asDoubleBuffer();
+            }
+            MappedByteBuffer buggy = channel.map(FileChannel.MapMode.READ_ONLY, columnsOffset + (long) nMetrics * nRows * Double.BYTES, nRows);
+            return new ColumnarDataset(channel, ReleaseIndex.of(releases, rowOffsets, buggyOffsets), metrics, buggy);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public ReleaseIndex getReleaseIndex() {
+        return releaseIndex;
+    }
+
+    public double getMetric(int column, int row) {
+        return metrics[column].get(row);
+    }
+
+    public boolean isBuggy(int row) {
+        return buggy.get(row) != 0;
+    }
+
+    /* releases in [fromRelease, toRelease) as a dataset of their own */
+    public WalkForwardDataset load(int fromRelease, int toRelease, String relationName) {
+        int first = releaseIndex.getReleaseOffset(fromRelease);
+        int nRows = releaseIndex.getRowCount(fromRelease, toRelease);
+        Instances instances = DatasetLoader.createHeader(relationName, nRows);
+        int nMetrics = metrics.length;
+        for(int row = first; row < first + nRows; row++) {
+            double[] values = new double[nMetrics + 1];
+            for(int c = 0; c < nMetrics; c++) {
+                values[c] = metrics[c].get(row);
+            }
+            values[nMetrics] = buggy.get(row);
+            instances.add(new DenseInstance(1.0, values));
+        }
+        return new WalkForwardDataset(instances, releaseIndex.subIndex(fromRelease, toRelease));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static long align(long offset) {
+        return (offset + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+    }
+}
@@ -0,0 +1,8 @@
+package walkforward;
+
+public enum CostSensitivityMode {
+    /* CostSensitiveClassifier: the training set is reweighted by the costs and a new model is trained */
+    REWEIGHTING,
+    /* the model of the cell without cost sensitivity predicts the class with the minimum expected cost */
+    MINIMUM_EXPECTED_COST
+}
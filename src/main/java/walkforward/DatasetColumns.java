@@ -0,0 +1,66 @@
+package walkforward;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/* The dataset as primitive columns, one array per metric, filled by DatasetParser in a single pass */
+public class DatasetColumns {
+    private final ReleaseIndex releaseIndex;
+    private final double[][] metrics;
+    private final boolean[] buggy;
+
+    private DatasetColumns(ReleaseIndex releaseIndex, double[][] metrics, boolean[] buggy) {
+        this.releaseIndex = releaseIndex;
+        this.metrics = metrics;
+        this.buggy = buggy;
+    }
+
+    public static DatasetColumns read(File dataset) throws IOException {
+        int nMetrics = DatasetLoader.getNumberOfMetrics();
+        int capacity = 1024;
+        double[][] metrics = new double[nMetrics][capacity];
+        boolean[] buggy = new boolean[capacity];
+        ReleaseIndex.Builder releaseIndex = new ReleaseIndex.Builder();
+        int nRows = 0;
+
+        try(DatasetParser parser = new DatasetParser(dataset)) {
+            while(parser.next()) {
+                if(nRows == capacity) {
+                    capacity *= 2;
+                    for(int m = 0; m < nMetrics; m++) {
+                        metrics[m] = Arrays.copyOf(metrics[m], capacity);
+                    }
+                    buggy = Arrays.copyOf(buggy, capacity);
+                }
+                for(int m = 0; m < nMetrics; m++) {
+                    metrics[m][nRows] = parser.getMetric(m);
+                }
+                buggy[nRows] = parser.isBuggy();
+                releaseIndex.addRow(parser.getRelease(), parser.isBuggy());
+                nRows++;
+            }
+        }
+
+        for(int m = 0; m < nMetrics; m++) {
+            metrics[m] = Arrays.copyOf(metrics[m], nRows);
+        }
+        return new DatasetColumns(releaseIndex.build(), metrics, Arrays.copyOf(buggy, nRows));
+    }
+
+    public ReleaseIndex getReleaseIndex() {
+        return releaseIndex;
+    }
+
+    public int getNumberOfRows() {
+        return buggy.length;
+    }
+
+    public double[] getMetric(int metric) {
+        return metrics[metric];
+    }
+
+    public boolean isBuggy(int row) {
+        return buggy[row];
+    }
+}
@@ -0,0 +1,69 @@
+package walkforward;
+
+import com.github.luben.zstd.ZstdInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+/*
+ * Opens a dataset by its extension: .gz and .zst files are decompressed while they are read, anything else is read
+ * as plain text. The decompression runs on a ReadAheadChannel thread, ahead of the parser, and nothing is written
+ * to disk.
+ */
+public class DatasetInput {
+    public static final String GZIP_EXTENSION = ".gz";
+    public static final String ZSTD_EXTENSION = ".zst";
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+
+    private DatasetInput() {}
+
+    public static boolean isCompressed(File dataset) {
+        String name = dataset.getName();
+        return name.endsWith(GZIP_EXTENSION) || name.endsWith(ZSTD_EXTENSION);
+    }
+
+    /* name of the dataset without the compression extension, zookeeper.csv for zookeeper.csv.zst */
+    public static String getName(File dataset) {
+        String name = dataset.getName();
+        if(name.endsWith(GZIP_EXTENSION)) {
+            return name.substring(0, name.length() - GZIP_EXTENSION.length());
+        }
+        if(name.endsWith(ZSTD_EXTENSION)) {
+            return name.substring(0, name.length() - ZSTD_EXTENSION.length());
+        }
+        return name;
+    }
+
+    public static ReadableByteChannel openChannel(File dataset) throws IOException {
+        if(!isCompressed(dataset)) {
+            return FileChannel.open(dataset.toPath(), StandardOpenOption.READ);
+        }
+        InputStream file = new BufferedInputStream(Files.newInputStream(dataset.toPath()), STREAM_BUFFER_SIZE);
+        try {
+            InputStream decompressed = dataset.getName().endsWith(GZIP_EXTENSION)
+                    ? new GZIPInputStream(file, STREAM_BUFFER_SIZE) : new ZstdInputStream(file);
+            return new ReadAheadChannel(decompressed, dataset.getName());
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    public static Reader openReader(File dataset) throws IOException {
+        if(!isCompressed(dataset)) {
+            return Files.newBufferedReader(dataset.toPath(), StandardCharsets.UTF_8);
+        }
+        return new InputStreamReader(Channels.newInputStream(openChannel(dataset)), StandardCharsets.UTF_8);
+    }
+}
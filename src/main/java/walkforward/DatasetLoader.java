@@ -0,0 +1,71 @@
+package walkforward;
+
+import instrumentation.Stage;
+import instrumentation.StageMetrics;
+import instrumentation.StageTimer;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class DatasetLoader {
+    private static final String[] METRICS = {"size", "LOC_touched", "NR", "NAuth", "LOC_added", "MAX_LOC_added",
+            "AVG_LOC_added", "churn", "MAX_churn"};
+    private static final String BUGGY = "buggy";
+
+    private DatasetLoader() {}
+
+    public static Instances createHeader(String relationName, int capacity) {
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        for(String metric : METRICS) {
+            attributes.add(new Attribute(metric));
+        }
+        attributes.add(new Attribute(BUGGY, Arrays.asList("no", "yes")));
+        Instances header = new Instances(relationName, attributes, capacity);
+        header.setClassIndex(header.numAttributes() - 1);
+        return header;
+    }
+
+    /* a compressed file can only be read from the top, a plain one is split among parallelism threads */
+    public static WalkForwardDataset load(File dataset, int parallelism) throws IOException {
+        if(parallelism <= 1 || DatasetInput.isCompressed(dataset)) {
+            return load(dataset);
+        }
+        return ParallelDatasetLoader.load(dataset, parallelism);
+    }
+
+    public static WalkForwardDataset load(File dataset) throws IOException {
+        Instances instances = createHeader(DatasetInput.getName(dataset), 1024);
+        ReleaseIndex.Builder releaseIndex = new ReleaseIndex.Builder();
+        StageTimer timer = StageMetrics.start(Stage.PARSE);
+
+        try(DatasetParser parser = new DatasetParser(dataset)) {
+            while(parser.next()) {
+                instances.add(new DenseInstance(1.0, readValues(parser)));
+                releaseIndex.addRow(parser.getRelease(), parser.isBuggy());
+            }
+        }
+        instances.compactify();
+        timer.stop();
+
+        return new WalkForwardDataset(instances, releaseIndex.build());
+    }
+
+    /* the only allocation of the row, Weka keeps this array */
+    static double[] readValues(DatasetParser parser) {
+        double[] values = new double[METRICS.length + 1];
+        for(int i = 0; i < METRICS.length; i++) {
+            values[i] = parser.getMetric(i);
+        }
+        values[METRICS.length] = parser.isBuggy() ? 1 : 0;
+        return values;
+    }
+
+    public static int getNumberOfMetrics() {
+        return METRICS.length;
+    }
+}
@@ -0,0 +1,306 @@
+package walkforward;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+ * Reader of the defect dataset schema: release, class name, the metrics of DatasetLoader and buggy.
+ * Records are scanned as bytes from a buffered channel: metrics are parsed straight into doubles, with null read
+ * as 0, the release is looked up by its bytes in an intern table and the class name is skipped, so a row allocates
+ * nothing once its release has been seen. Quoted fields, with "" as an escaped quote, are accepted in every column.
+ * .gz and .zst files are decompressed by DatasetInput while they are parsed.
+ *
+ *     try(DatasetParser parser = new DatasetParser(file)) {
+ *         while(parser.next()) { ... parser.getMetric(0) ... }
+ *     }
+ */
+public class DatasetParser implements AutoCloseable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int FIRST_METRIC_COLUMN = 2;
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] YES = "yes".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NO = "no".getBytes(StandardCharsets.US_ASCII);
+    /* 10^k is exact as a double up to k = 22, so mantissa / 10^k is correctly rounded like Double.parseDouble */
+    private static final double[] POWERS_OF_TEN = new double[23];
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for(int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final String name;
+    private final ReadableByteChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private boolean endOfInput = false;
+    private boolean unterminatedRecord = false;
+    private final InternTable releases = new InternTable();
+
+    /* field boundaries of the current record, as offsets in the buffer array */
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds = new int[16];
+    private boolean[] fieldQuoted = new boolean[16];
+    private int nFields;
+
+    private final double[] metrics = new double[DatasetLoader.getNumberOfMetrics()];
+    private String release;
+    private boolean buggy;
+    private int row = -1;
+
+    public DatasetParser(File dataset) throws IOException {
+        this(DatasetInput.openChannel(dataset), dataset.getName(), true);
+    }
+
+    /* records of a channel that starts at a record, with the header when the channel starts at the beginning of the file */
+    DatasetParser(ReadableByteChannel channel, String name, boolean header) throws IOException {
+        this.name = name;
+        this.channel = channel;
+        buffer.flip();
+        if(header) {
+            nextRecord();
+        }
+    }
+
+    /* false at the end of the file */
+    public boolean next() throws IOException {
+        while(nextRecord()) {
+            if(nFields == 1 && fieldStarts[0] == fieldEnds[0]) {
+                /* blank line */
+                continue;
+            }
+            parseRecord();
+            row++;
+            return true;
+        }
+        return false;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public String getRelease() {
+        return release;
+    }
+
+    public double getMetric(int metric) {
+        return metrics[metric];
+    }
+
+    public boolean isBuggy() {
+        return buggy;
+    }
+
+    /* true when the input did not end with a newline, or ended inside a quoted field */
+    public boolean hasUnterminatedRecord() {
+        return unterminatedRecord;
+    }
+
+    private void parseRecord() throws IOException {
+        if(nFields < FIRST_METRIC_COLUMN + metrics.length + 1) {
+            throw new IOException("Row " + (row + 1) + " of " + name + " has " + nFields + " fields");
+        }
+        byte[] bytes = buffer.array();
+        release = releases.get(bytes, fieldStarts[0], fieldEnds[0], fieldQuoted[0]);
+        for(int i = 0; i < metrics.length; i++) {
+            int field = FIRST_METRIC_COLUMN + i;
+            metrics[i] = parseDouble(bytes, fieldStarts[field], fieldEnds[field]);
+        }
+        int last = nFields - 1;
+        if(equals(bytes, fieldStarts[last], fieldEnds[last], YES)) {
+            buggy = true;
+        } else if(equals(bytes, fieldStarts[last], fieldEnds[last], NO)) {
+            buggy = false;
+        } else {
+            throw new IOException("Unexpected buggy value '" + new String(bytes, fieldStarts[last], fieldEnds[last] - fieldStarts[last],
+                    StandardCharsets.UTF_8) + "' in " + name);
+        }
+    }
+
+    private double parseDouble(byte[] bytes, int start, int end) {
+        if(equals(bytes, start, end, NULL)) {
+            return 0;
+        }
+        int position = start;
+        boolean negative = false;
+        if(position < end && (bytes[position] == '-' || bytes[position] == '+')) {
+            negative = bytes[position] == '-';
+            position++;
+        }
+        long mantissa = 0;
+        int fractionDigits = 0;
+        boolean digits = false;
+        boolean point = false;
+        for(; position < end; position++) {
+            byte b = bytes[position];
+            if(b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits = true;
+                if(point) {
+                    fractionDigits++;
+                }
+                if(mantissa >= MAX_EXACT_MANTISSA) {
+                    break;
+                }
+            } else if(b == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        if(position < end || !digits || fractionDigits >= POWERS_OF_TEN.length) {
+            /* exponents, blanks, long mantissas and malformed values go through the JDK, which also reports errors */
+            return Double.parseDouble(new String(bytes, start, end - start, StandardCharsets.US_ASCII));
+        }
+        double value = fractionDigits == 0 ? mantissa : mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    private static boolean equals(byte[] bytes, int start, int end, byte[] expected) {
+        return end - start == expected.length && Arrays.equals(bytes, start, end, expected, 0, expected.length);
+    }
+
+    /*
+     * Splits the next record into fields, refilling the buffer when the record is not complete.
+     * Quoted fields lose their quotes; a quoted field containing "" keeps them and is unescaped when interned.
+     */
+    private boolean nextRecord() throws IOException {
+        while(true) {
+            int end = splitRecord(buffer.position(), buffer.limit(), false);
+            if(end >= 0) {
+                buffer.position(end + 1);
+                return true;
+            }
+            if(endOfInput) {
+                if(!buffer.hasRemaining()) {
+                    return false;
+                }
+                /* last record without a newline */
+                unterminatedRecord = true;
+                splitRecord(buffer.position(), buffer.limit(), true);
+                buffer.position(buffer.limit());
+                return true;
+            }
+            /* the record is split again from its start once the buffer holds all of it */
+            fill();
+        }
+    }
+
+    /* offset of the newline ending the record, -1 when the buffer does not contain it unless it ends at the limit */
+    private int splitRecord(int start, int limit, boolean endsAtLimit) {
+        byte[] bytes = buffer.array();
+        nFields = 0;
+        int fieldStart = start;
+        boolean quoted = false;
+        for(int i = start; i < limit; i++) {
+            byte b = bytes[i];
+            if(b == '"') {
+                quoted = !quoted;
+            } else if(!quoted && b == ',') {
+                addField(bytes, fieldStart, i);
+                fieldStart = i + 1;
+            } else if(!quoted && b == '\n') {
+                addField(bytes, fieldStart, i > fieldStart && bytes[i - 1] == '\r' ? i - 1 : i);
+                return i;
+            }
+        }
+        if(endsAtLimit) {
+            addField(bytes, fieldStart, limit > fieldStart && bytes[limit - 1] == '\r' ? limit - 1 : limit);
+        }
+        return -1;
+    }
+
+    private void fill() throws IOException {
+        buffer.compact();
+        if(!buffer.hasRemaining()) {
+            /* a record longer than the buffer */
+            buffer.flip();
+            buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer);
+        }
+        if(channel.read(buffer) < 0) {
+            endOfInput = true;
+        }
+        buffer.flip();
+    }
+
+    private void addField(byte[] bytes, int start, int end) {
+        if(nFields == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, nFields * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, nFields * 2);
+            fieldQuoted = Arrays.copyOf(fieldQuoted, nFields * 2);
+        }
+        boolean quoted = end - start >= 2 && bytes[start] == '"' && bytes[end - 1] == '"';
+        fieldStarts[nFields] = quoted ? start + 1 : start;
+        fieldEnds[nFields] = quoted ? end - 1 : end;
+        fieldQuoted[nFields] = quoted;
+        nFields++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /* open addressing table from the bytes of a field to its string */
+    private static class InternTable {
+        private byte[][] keys = new byte[64][];
+        private String[] values = new String[64];
+        private int size = 0;
+
+        private String get(byte[] bytes, int start, int end, boolean quoted) {
+            int hash = hash(bytes, start, end);
+            int mask = keys.length - 1;
+            int slot = hash & mask;
+            while(keys[slot] != null) {
+                byte[] key = keys[slot];
+                if(Arrays.equals(key, 0, key.length, bytes, start, end)) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            String value = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+            if(quoted) {
+                value = value.replace("\"\"", "\"");
+            }
+            value = value.intern();
+            keys[slot] = Arrays.copyOfRange(bytes, start, end);
+            values[slot] = value;
+            if(++size * 2 > keys.length) {
+                grow();
+            }
+            return value;
+        }
+
+        private void grow() {
+            byte[][] oldKeys = keys;
+            String[] oldValues = values;
+            keys = new byte[oldKeys.length * 2][];
+            values = new String[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for(int i = 0; i < oldKeys.length; i++) {
+                if(oldKeys[i] != null) {
+                    int slot = hash(oldKeys[i], 0, oldKeys[i].length) & mask;
+                    while(keys[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int hash(byte[] bytes, int start, int end) {
+            int hash = 0x811C9DC5;
+            for(int i = start; i < end; i++) {
+                hash = (hash ^ bytes[i]) * 0x01000193;
+            }
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package walkforward;
+
+import instrumentation.Stage;
+import instrumentation.StageMetrics;
+import instrumentation.StageTimer;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.UpdateableClassifier;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Updateable classifier kept alive across the steps of one walk forward.
+ * At every step it only learns the release that moved from testing to training. Steps are evaluated in the order
+ * they are registered: a cell waits until the model has been evaluated on every step registered before its own.
+ * When a step is skipped, the next one rebuilds the model on its whole training set.
+ */
+public class IncrementalModel {
+    private static final Logger LOGGER = Logger.getLogger(IncrementalModel.class.getName());
+
+    private final ClassifierType classifierType;
+    private final String options;
+    private final boolean kdTree;
+    private AbstractClassifier classifier = null;
+    private int lastStep = 0;
+    private final Deque<Integer> registeredSteps = new ArrayDeque<>();
+
+    public IncrementalModel(ClassifierType classifierType) {
+        this(classifierType, null, false);
+    }
+
+    public IncrementalModel(ClassifierType classifierType, String options, boolean kdTree) {
+        if(!classifierType.isUpdateable()) {
+            throw new IllegalArgumentException(classifierType.getLabel() + " cannot be trained incrementally");
+        }
+        this.classifierType = classifierType;
+        this.options = options;
+        this.kdTree = kdTree;
+    }
+
+    public ClassifierType getClassifierType() {
+        return classifierType;
+    }
+
+    /* to be called in step order, before the cell of the step is submitted */
+    public synchronized void register(WalkForwardStep step) {
+        registeredSteps.addLast(step.getNumber());
+    }
+
+    public synchronized ResultMetrics evaluate(WalkForwardStep step, StreamingEvaluator evaluator) throws InterruptedException {
+        while(registeredSteps.isEmpty() || registeredSteps.peekFirst() != step.getNumber()) {
+            wait();
+        }
+        ResultMetrics metrics = null;
+        try {
+            StageTimer timer = StageMetrics.start(Stage.TRAIN);
+            train(step);
+            timer.stop();
+            timer = StageMetrics.start(Stage.EVALUATE);
+            metrics = evaluator.evaluate(classifier, step.getTestingSet());
+            timer.stop();
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Exception caught in incremental training, the next step rebuilds the model", e);
+            classifier = null;
+        } finally {
+            lastStep = step.getNumber();
+            registeredSteps.removeFirst();
+            notifyAll();
+        }
+        return metrics;
+    }
+
+    private void train(WalkForwardStep step) throws Exception {
+        if(classifier == null || step.getAddedRows() == null || lastStep != step.getNumber() - 1) {
+            classifier = classifierType.newUpdateableClassifier(options, kdTree);
+            classifier.buildClassifier(step.getTrainingSet());
+            return;
+        }
+        UpdateableClassifier updateableClassifier = (UpdateableClassifier) classifier;
+        Instances addedRows = step.getAddedRows();
+        for(Instance instance : addedRows) {
+            updateableClassifier.updateClassifier(instance);
+        }
+    }
+}
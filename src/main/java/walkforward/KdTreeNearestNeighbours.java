@@ -0,0 +1,617 @@
+package walkforward;
+
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.UpdateableClassifier;
+import weka.classifiers.lazy.IBk;
+import weka.core.Capabilities;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+import weka.core.WeightedInstancesHandler;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * k nearest neighbours of IBk over a KD-tree of the training rows, kept as primitive arrays.
+ * The tree splits on raw values and the distances are normalized at query time, so the ranges can grow like those of
+ * IBk, which extends them with every training row and every query: each distance is the same sum of squared
+ * normalized differences, in the same attribute order, and the neighbours are the same k nearest rows plus those tied
+ * with the k-th. A subtree is skipped only when a lower bound of its distances is beyond the k-th distance, and a row
+ * is normalized again only when it is compared after a range changed.
+ * Rows added by updateClassifier go down to a leaf, which splits when it is full. Rows missing the split feature go
+ * to a third subtree. Supports -K, -I and -F of IBk, numeric attributes and a nominal class.
+ */
+public class KdTreeNearestNeighbours extends AbstractClassifier implements UpdateableClassifier, WeightedInstancesHandler {
+    private static final long serialVersionUID = 1L;
+    private static final int LEAF_SIZE = 32;
+
+    private int k = 1;
+    private int distanceWeighting = IBk.WEIGHT_NONE;
+
+    private Instances header;
+    private int[] featureAttributes;
+    private int nFeatures;
+    private int nClasses;
+    /* training rows: features row-major, class and weight */
+    private double[] values;
+    /* the features normalized with the ranges of normalizedVersion, renormalized when a row is compared after a change */
+    private double[] normalizedValues;
+    private int[] normalizedVersions;
+    private int rangesVersion;
+    private int[] classes;
+    private double[] weights;
+    private int nRows;
+    private double[] min;
+    private double[] max;
+    /* rows where each feature is present */
+    private int[] nPresent;
+    private Node root;
+
+    /* search state, reused from one query to the next */
+    private transient double[] query;
+    private transient double[] normalizedQuery;
+    /* the least squared difference of the query to any row on each feature */
+    private transient double[] lowerBounds;
+    private transient double[] heap;
+    private transient int heapSize;
+    private transient int[] candidateRows;
+    private transient double[] candidateDistances;
+    private transient int nCandidates;
+
+    public int getKNN() {
+        return k;
+    }
+
+    public void setKNN(int k) {
+        if(k < 1) {
+            throw new IllegalArgumentException("k must be at least 1, got " + k);
+        }
+        this.k = k;
+    }
+
+    /* IBk.WEIGHT_NONE, WEIGHT_INVERSE or WEIGHT_SIMILARITY */
+    public int getDistanceWeighting() {
+        return distanceWeighting;
+    }
+
+    public void setDistanceWeighting(int distanceWeighting) {
+        this.distanceWeighting = distanceWeighting;
+    }
+
+    @Override
+    public void setOptions(String[] options) throws Exception {
+        String kOption = Utils.getOption('K', options);
+        setKNN(kOption.isEmpty() ? 1 : Integer.parseInt(kOption));
+        if(Utils.getFlag('I', options)) {
+            setDistanceWeighting(IBk.WEIGHT_INVERSE);
+        } else if(Utils.getFlag('F', options)) {
+            setDistanceWeighting(IBk.WEIGHT_SIMILARITY);
+        } else {
+            setDistanceWeighting(IBk.WEIGHT_NONE);
+        }
+        super.setOptions(options);
+        Utils.checkForRemainingOptions(options);
+    }
+
+    @Override
+    public String[] getOptions() {
+        List<String> options = new ArrayList<>(Arrays.asList("-K", String.valueOf(k)));
+        if(distanceWeighting == IBk.WEIGHT_INVERSE) {
+            options.add("-I");
+        } else if(distanceWeighting == IBk.WEIGHT_SIMILARITY) {
+            options.add("-F");
+        }
+        options.addAll(Arrays.asList(super.getOptions()));
+        return options.toArray(new String[0]);
+    }
+
+    @Override
+    public Capabilities getCapabilities() {
+        Capabilities capabilities = super.getCapabilities();
+        capabilities.disableAll();
+        capabilities.enable(Capabilities.Capability.NUMERIC_ATTRIBUTES);
+        capabilities.enable(Capabilities.Capability.MISSING_VALUES);
+        capabilities.enable(Capabilities.Capability.NOMINAL_CLASS);
+        capabilities.enable(Capabilities.Capability.MISSING_CLASS_VALUES);
+        capabilities.setMinimumNumberInstances(0);
+        return capabilities;
+    }
+
+    @Override
+    public void buildClassifier(Instances data) throws Exception {
+        getCapabilities().testWithFail(data);
+        header = new Instances(data, 0);
+        nClasses = data.numClasses();
+        nFeatures = data.numAttributes() - 1;
+        featureAttributes = new int[nFeatures];
+        for(int a = 0, f = 0; a < data.numAttributes(); a++) {
+            if(a != data.classIndex()) {
+                featureAttributes[f++] = a;
+            }
+        }
+        int capacity = Math.max(LEAF_SIZE, data.numInstances());
+        values = new double[capacity * nFeatures];
+        normalizedValues = new double[capacity * nFeatures];
+        normalizedVersions = new int[capacity];
+        rangesVersion = 1;
+        classes = new int[capacity];
+        weights = new double[capacity];
+        nRows = 0;
+        min = new double[nFeatures];
+        max = new double[nFeatures];
+        Arrays.fill(min, Double.NaN);
+        Arrays.fill(max, Double.NaN);
+        nPresent = new int[nFeatures];
+
+        for(Instance instance : data) {
+            if(!instance.classIsMissing()) {
+                addRow(instance);
+            }
+        }
+        int[] rows = new int[nRows];
+        for(int row = 0; row < nRows; row++) {
+            rows[row] = row;
+        }
+        root = build(rows, 0, rows.length);
+    }
+
+    @Override
+    public void updateClassifier(Instance instance) throws Exception {
+        if(!header.equalHeaders(instance.dataset())) {
+            throw new IllegalArgumentException("Incompatible instance: " + header.equalHeadersMsg(instance.dataset()));
+        }
+        if(instance.classIsMissing()) {
+            return;
+        }
+        root = insert(root, addRow(instance));
+    }
+
+    @Override
+    public double[] distributionForInstance(Instance instance) throws Exception {
+        startSearch();
+        /* the query extends the ranges before the search, as addInstanceInfo does in IBk */
+        for(int f = 0; f < nFeatures; f++) {
+            query[f] = instance.value(featureAttributes[f]);
+            updateRange(f, query[f]);
+        }
+        for(int f = 0; f < nFeatures; f++) {
+            normalizedQuery[f] = norm(query[f], f);
+            if(!Utils.isMissingValue(query[f])) {
+                /* the difference to a missing value when no row has the feature */
+                lowerBounds[f] = nPresent[f] == 0 ? square(missingDifference(f)) : 0;
+            } else {
+                /* at least 1/2 to a present value, 1 to a missing one */
+                lowerBounds[f] = nPresent[f] == 0 ? 1 : 0.25;
+            }
+        }
+        search(root);
+        return makeDistribution();
+    }
+
+    private int addRow(Instance instance) {
+        if(nRows == classes.length) {
+            int capacity = classes.length * 2;
+            values = Arrays.copyOf(values, capacity * nFeatures);
+            normalizedValues = Arrays.copyOf(normalizedValues, capacity * nFeatures);
+            normalizedVersions = Arrays.copyOf(normalizedVersions, capacity);
+            classes = Arrays.copyOf(classes, capacity);
+            weights = Arrays.copyOf(weights, capacity);
+        }
+        int row = nRows++;
+        for(int f = 0; f < nFeatures; f++) {
+            double value = instance.value(featureAttributes[f]);
+            values[row * nFeatures + f] = value;
+            updateRange(f, value);
+            if(!Utils.isMissingValue(value)) {
+                nPresent[f]++;
+            }
+        }
+        classes[row] = (int) instance.classValue();
+        weights[row] = instance.weight();
+        return row;
+    }
+
+    private void updateRange(int f, double value) {
+        if(Utils.isMissingValue(value)) {
+            return;
+        }
+        if(Double.isNaN(min[f])) {
+            min[f] = value;
+            max[f] = value;
+        } else if(value < min[f]) {
+            min[f] = value;
+        } else if(value > max[f]) {
+            max[f] = value;
+        } else {
+            return;
+        }
+        rangesVersion++;
+    }
+
+    /* the normalization of EuclideanDistance, 0 on a feature without range */
+    private double norm(double value, int f) {
+        if(Double.isNaN(min[f]) || max[f] == min[f]) {
+            return 0;
+        }
+        return (value - min[f]) / (max[f] - min[f]);
+    }
+
+    /* squared distance of the query to a row, infinite as soon as it exceeds cutOff */
+    private double distance(int row, double cutOff) {
+        double distance = 0;
+        int offset = row * nFeatures;
+        if(normalizedVersions[row] != rangesVersion) {
+            for(int f = 0; f < nFeatures; f++) {
+                normalizedValues[offset + f] = norm(values[offset + f], f);
+            }
+            normalizedVersions[row] = rangesVersion;
+        }
+        for(int f = 0; f < nFeatures; f++) {
+            double value = values[offset + f];
+            double difference;
+            if(Utils.isMissingValue(query[f]) || Utils.isMissingValue(value)) {
+                /* the largest difference the present value can have, 1 when both are missing */
+                if(Utils.isMissingValue(query[f]) && Utils.isMissingValue(value)) {
+                    difference = 1;
+                } else if(Utils.isMissingValue(value)) {
+                    difference = missingDifference(f);
+                } else {
+                    difference = normalizedValues[offset + f];
+                    if(difference < 0.5) {
+                        difference = 1.0 - difference;
+                    }
+                }
+            } else {
+                difference = normalizedQuery[f] - normalizedValues[offset + f];
+            }
+            distance += difference * difference;
+            if(distance > cutOff) {
+                return Double.POSITIVE_INFINITY;
+            }
+        }
+        return distance;
+    }
+
+    private void startSearch() {
+        if(query == null) {
+            query = new double[nFeatures];
+            normalizedQuery = new double[nFeatures];
+            lowerBounds = new double[nFeatures];
+        }
+        if(heap == null || heap.length < k) {
+            heap = new double[k];
+            candidateRows = new int[2 * k + LEAF_SIZE];
+            candidateDistances = new double[candidateRows.length];
+        }
+        heapSize = 0;
+        nCandidates = 0;
+    }
+
+    /* the k-th distance so far, infinite until k rows are found */
+    private double kthDistance() {
+        return heapSize < k ? Double.POSITIVE_INFINITY : heap[0];
+    }
+
+    private void search(Node node) {
+        if(node.rows != null) {
+            for(int i = 0; i < node.nRows; i++) {
+                consider(node.rows[i]);
+            }
+            return;
+        }
+        double value = query[node.feature];
+        if(Utils.isMissingValue(value)) {
+            search(node.left);
+            search(node.right);
+            if(node.missing != null) {
+                search(node.missing);
+            }
+            return;
+        }
+        boolean left = value < node.split;
+        search(left ? node.left : node.right);
+        /* every row across the plane is at least as far on the split feature */
+        double planeDistance = square(normalizedQuery[node.feature] - norm(node.split, node.feature));
+        if(!(lowerBound(node.feature, planeDistance) > kthDistance())) {
+            search(left ? node.right : node.left);
+        }
+        if(node.missing != null && !(lowerBound(node.feature, square(missingDifference(node.feature))) > kthDistance())) {
+            search(node.missing);
+        }
+    }
+
+    /*
+     * the least distance of a subtree whose rows are at least at difference from the query on feature. It is summed in
+     * the order of the distance, so that rounding cannot make it exceed the distance of any of those rows.
+     */
+    private double lowerBound(int feature, double difference) {
+        double bound = 0;
+        for(int f = 0; f < nFeatures; f++) {
+            bound += f == feature ? Math.max(difference, lowerBounds[f]) : lowerBounds[f];
+        }
+        return bound;
+    }
+
+    /* difference of the present query value to a missing value */
+    private double missingDifference(int f) {
+        double difference = normalizedQuery[f];
+        return difference < 0.5 ? 1.0 - difference : difference;
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+
+    /* the k nearest rows and those tied with the k-th, as the heap of LinearNNSearch keeps them */
+    private void consider(int row) {
+        double kth = kthDistance();
+        double distance = distance(row, kth);
+        if(distance > kth) {
+            return;
+        }
+        if(heapSize < k) {
+            heapPush(distance);
+        } else if(distance < kth) {
+            heapReplaceTop(distance);
+        }
+        if(nCandidates == candidateRows.length) {
+            compactCandidates();
+        }
+        candidateRows[nCandidates] = row;
+        candidateDistances[nCandidates++] = distance;
+    }
+
+    /* drops the candidates beyond the k-th distance, grows the arrays when they are all tied */
+    private void compactCandidates() {
+        double kth = kthDistance();
+        int kept = 0;
+        for(int c = 0; c < nCandidates; c++) {
+            if(candidateDistances[c] <= kth) {
+                candidateRows[kept] = candidateRows[c];
+                candidateDistances[kept++] = candidateDistances[c];
+            }
+        }
+        nCandidates = kept;
+        if(nCandidates > candidateRows.length / 2) {
+            candidateRows = Arrays.copyOf(candidateRows, candidateRows.length * 2);
+            candidateDistances = Arrays.copyOf(candidateDistances, candidateDistances.length * 2);
+        }
+    }
+
+    private void heapPush(double distance) {
+        int i = heapSize++;
+        while(i > 0 && heap[(i - 1) / 2] < distance) {
+            heap[i] = heap[(i - 1) / 2];
+            i = (i - 1) / 2;
+        }
+        heap[i] = distance;
+    }
+
+    private void heapReplaceTop(double distance) {
+        int i = 0;
+        while(true) {
+            int child = 2 * i + 1;
+            if(child >= heapSize) {
+                break;
+            }
+            if(child + 1 < heapSize && heap[child + 1] > heap[child]) {
+                child++;
+            }
+            if(heap[child] <= distance) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = distance;
+    }
+
+    /* the distribution of IBk.makeDistribution over the neighbours in increasing distance */
+    private double[] makeDistribution() {
+        compactCandidates();
+        /* insertion sort by distance then row, there are about k of them */
+        for(int c = 1; c < nCandidates; c++) {
+            int row = candidateRows[c];
+            double distance = candidateDistances[c];
+            int position = c;
+            while(position > 0 && (candidateDistances[position - 1] > distance
+                    || candidateDistances[position - 1] == distance && candidateRows[position - 1] > row)) {
+                candidateRows[position] = candidateRows[position - 1];
+                candidateDistances[position] = candidateDistances[position - 1];
+                position--;
+            }
+            candidateRows[position] = row;
+            candidateDistances[position] = distance;
+        }
+
+        double[] distribution = new double[nClasses];
+        for(int c = 0; c < nClasses; c++) {
+            distribution[c] = 1.0 / Math.max(1, nRows);
+        }
+        double total = (double) nClasses / Math.max(1, nRows);
+        for(int c = 0; c < nCandidates; c++) {
+            double distance = Math.sqrt(candidateDistances[c]);
+            distance = distance * distance;
+            distance = Math.sqrt(distance / nFeatures);
+            double weight;
+            if(distanceWeighting == IBk.WEIGHT_INVERSE) {
+                weight = 1.0 / (distance + 0.001);
+            } else if(distanceWeighting == IBk.WEIGHT_SIMILARITY) {
+                weight = 1.0 - distance;
+            } else {
+                weight = 1.0;
+            }
+            int row = candidateRows[c];
+            weight *= weights[row];
+            distribution[classes[row]] += weight;
+            total += weight;
+        }
+        if(total > 0) {
+            Utils.normalize(distribution, total);
+        }
+        return distribution;
+    }
+
+    private Node build(int[] rows, int from, int to) {
+        if(to - from <= LEAF_SIZE) {
+            Node leaf = new Node();
+            leaf.rows = Arrays.copyOf(Arrays.copyOfRange(rows, from, to), LEAF_SIZE + 1);
+            leaf.nRows = to - from;
+            return leaf;
+        }
+        Node node = split(rows, from, to);
+        if(node == null) {
+            /* every row has the same features, a bigger leaf */
+            Node leaf = new Node();
+            leaf.rows = Arrays.copyOfRange(rows, from, to + to - from);
+            leaf.nRows = to - from;
+            return leaf;
+        }
+        int missing = partitionMissing(rows, from, to, node.feature);
+        int middle = partition(rows, from, missing, node.feature, node.split);
+        node.left = build(rows, from, middle);
+        node.right = build(rows, middle, missing);
+        node.missing = missing < to ? build(rows, missing, to) : null;
+        return node;
+    }
+
+    private Node insert(Node node, int row) {
+        Node parent = null;
+        Node current = node;
+        while(current.rows == null) {
+            parent = current;
+            double value = values[row * nFeatures + current.feature];
+            if(!Utils.isMissingValue(value)) {
+                current = value < current.split ? current.left : current.right;
+            } else if(current.missing != null) {
+                current = current.missing;
+            } else {
+                current.missing = new Node();
+                current.missing.rows = new int[LEAF_SIZE + 1];
+                current = current.missing;
+            }
+        }
+        if(current.nRows == current.rows.length) {
+            current.rows = Arrays.copyOf(current.rows, current.rows.length * 2);
+        }
+        current.rows[current.nRows++] = row;
+        /* a leaf of equal rows is tried again each time it doubles */
+        if(current.nRows <= LEAF_SIZE || current.nRows != LEAF_SIZE + 1 && Integer.bitCount(current.nRows) != 1) {
+            return node;
+        }
+        Node replacement = build(current.rows, 0, current.nRows);
+        if(replacement.rows != null) {
+            return node;
+        }
+        if(parent == null) {
+            return replacement;
+        }
+        if(parent.left == current) {
+            parent.left = replacement;
+        } else if(parent.right == current) {
+            parent.right = replacement;
+        } else {
+            parent.missing = replacement;
+        }
+        return node;
+    }
+
+    /*
+     * the feature of widest normalized spread over the rows where it is present, split at its median;
+     * null when no feature has two values
+     */
+    private Node split(int[] rows, int from, int to) {
+        int feature = -1;
+        double widest = 0;
+        for(int f = 0; f < nFeatures; f++) {
+            double range = max[f] - min[f];
+            if(!(range > 0)) {
+                continue;
+            }
+            double low = Double.POSITIVE_INFINITY;
+            double high = Double.NEGATIVE_INFINITY;
+            int present = 0;
+            for(int i = from; i < to; i++) {
+                double value = values[rows[i] * nFeatures + f];
+                if(!Utils.isMissingValue(value)) {
+                    low = Math.min(low, value);
+                    high = Math.max(high, value);
+                    present++;
+                }
+            }
+            /* the rows missing the feature are searched whatever the split */
+            double spread = (high - low) / range * present / (to - from);
+            if(spread > widest) {
+                widest = spread;
+                feature = f;
+            }
+        }
+        if(feature < 0) {
+            return null;
+        }
+        double[] sorted = new double[to - from];
+        int nPresent = 0;
+        for(int i = from; i < to; i++) {
+            double value = values[rows[i] * nFeatures + feature];
+            if(!Utils.isMissingValue(value)) {
+                sorted[nPresent++] = value;
+            }
+        }
+        sorted = Arrays.copyOf(sorted, nPresent);
+        Arrays.sort(sorted);
+        /* rows below the split go left, so the split is the smallest value above the minimum at or after the median */
+        int median = sorted.length / 2;
+        while(median < sorted.length && sorted[median] == sorted[0]) {
+            median++;
+        }
+        Node node = new Node();
+        node.feature = feature;
+        node.split = sorted[median];
+        return node;
+    }
+
+    /* moves the rows missing the feature after the others, returns the first of them */
+    private int partitionMissing(int[] rows, int from, int to, int feature) {
+        int missing = to;
+        for(int i = to - 1; i >= from; i--) {
+            if(Utils.isMissingValue(values[rows[i] * nFeatures + feature])) {
+                int row = rows[i];
+                rows[i] = rows[--missing];
+                rows[missing] = row;
+            }
+        }
+        return missing;
+    }
+
+    /* moves the rows below split before the others, returns the first of the others */
+    private int partition(int[] rows, int from, int to, int feature, double split) {
+        int middle = from;
+        for(int i = from; i < to; i++) {
+            if(values[rows[i] * nFeatures + feature] < split) {
+                int row = rows[i];
+                rows[i] = rows[middle];
+                rows[middle++] = row;
+            }
+        }
+        return middle;
+    }
+
+    /*
+     * a leaf has rows, an inner node a split: rows with the feature below split on the left, the others on the right,
+     * those missing it in the missing subtree, null while there are none
+     */
+    private static class Node implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private int[] rows;
+        private int nRows;
+        private int feature;
+        private double split;
+        private Node left;
+        private Node right;
+        private Node missing;
+    }
+}
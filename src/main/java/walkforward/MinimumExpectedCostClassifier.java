@@ -0,0 +1,50 @@
+package walkforward;
+
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.CostMatrix;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/*
+ * Applies a cost matrix at prediction time on top of an already trained classifier: the predicted class is the one
+ * with the minimum expected cost, which is what CostSensitiveClassifier does with minimizeExpectedCost set.
+ * The base classifier is only trained by buildClassifier, so a trained one can be wrapped as it is.
+ */
+public class MinimumExpectedCostClassifier extends AbstractClassifier {
+    private static final long serialVersionUID = 1L;
+
+    private final AbstractClassifier classifier;
+    private final CostMatrix costMatrix;
+
+    public MinimumExpectedCostClassifier(AbstractClassifier classifier, CostMatrix costMatrix) {
+        this.classifier = classifier;
+        this.costMatrix = costMatrix;
+    }
+
+    public AbstractClassifier getClassifier() {
+        return classifier;
+    }
+
+    public CostMatrix getCostMatrix() {
+        return costMatrix;
+    }
+
+    @Override
+    public void buildClassifier(Instances data) throws Exception {
+        classifier.buildClassifier(data);
+    }
+
+    @Override
+    public double[] distributionForInstance(Instance instance) throws Exception {
+        double[] expectedCosts = costMatrix.expectedCosts(classifier.distributionForInstance(instance));
+        int minimumCostClass = 0;
+        for(int i = 1; i < expectedCosts.length; i++) {
+            if(expectedCosts[i] < expectedCosts[minimumCostClass]) {
+                minimumCostClass = i;
+            }
+        }
+        double[] distribution = new double[expectedCosts.length];
+        distribution[minimumCostClass] = 1.0;
+        return distribution;
+    }
+}
@@ -0,0 +1,278 @@
+package walkforward;
+
+import instrumentation.Stage;
+import instrumentation.StageMetrics;
+import instrumentation.StageTimer;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Loads a plain text dataset in chunks parsed on a fork-join pool.
+ * The file is ordered by release, so it is cut into byte ranges that start at the first row of a release; every chunk
+ * is parsed with its own DatasetParser into rows and a release index, and the chunks are appended in file order.
+ * The chunks of every load run on the common pool, so that the projects of a batch do not add threads of their own.
+ * A cut is found by looking for a newline, which is wrong only if it falls in a quoted field spanning lines: the chunk
+ * before such a cut ends inside a record, and the file is then loaded again by a single parser.
+ */
+class ParallelDatasetLoader {
+    private static final Logger LOGGER = Logger.getLogger(ParallelDatasetLoader.class.getName());
+    /* more chunks than threads, releases make them uneven */
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final long MIN_CHUNK_BYTES = 1 << 20;
+    private static final int SCAN_BUFFER_SIZE = 1 << 16;
+
+    private ParallelDatasetLoader() {}
+
+    static WalkForwardDataset load(File dataset, int parallelism) throws IOException {
+        StageTimer timer = StageMetrics.start(Stage.PARSE);
+        List<Chunk> chunks;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        try(FileChannel channel = FileChannel.open(dataset.toPath(), StandardOpenOption.READ)) {
+            long[] boundaries = findBoundaries(pool, channel, parallelism);
+            chunks = parseChunks(pool, channel, boundaries, dataset.getName());
+        } catch (ExecutionException e) {
+            throw new IOException("Cannot split " + dataset.getName(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading " + dataset.getName(), e);
+        }
+        if(chunks == null) {
+            LOGGER.log(Level.INFO, "{0} cannot be split at release boundaries, it is loaded by a single parser", dataset.getName());
+            return DatasetLoader.load(dataset);
+        }
+
+        int nRows = 0;
+        List<ReleaseIndex> releaseIndexes = new ArrayList<>(chunks.size());
+        for(Chunk chunk : chunks) {
+            nRows += chunk.rows.size();
+            releaseIndexes.add(chunk.releaseIndex);
+        }
+        Instances instances = DatasetLoader.createHeader(dataset.getName(), nRows);
+        for(Chunk chunk : chunks) {
+            for(double[] row : chunk.rows) {
+                instances.add(new DenseInstance(1.0, row));
+            }
+        }
+        timer.stop();
+        return new WalkForwardDataset(instances, ReleaseIndex.concat(releaseIndexes));
+    }
+
+    /* null when a cut fell inside a record or a chunk could not be parsed, the single parser reports the error */
+    private static List<Chunk> parseChunks(ForkJoinPool pool, FileChannel channel, long[] boundaries, String name)
+            throws InterruptedException {
+        List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+        for(int c = 0; c + 1 < boundaries.length; c++) {
+            ReadableByteChannel range = new RangeChannel(channel, boundaries[c], boundaries[c + 1]);
+            String chunkName = name + " [" + boundaries[c] + ", " + boundaries[c + 1] + ")";
+            tasks.add(pool.submit(() -> parseChunk(range, chunkName)));
+        }
+        try {
+            List<Chunk> chunks = new ArrayList<>(tasks.size());
+            for(int c = 0; c < tasks.size(); c++) {
+                Chunk chunk = tasks.get(c).get();
+                if(chunk.unterminated && c + 1 < tasks.size()) {
+                    return null;
+                }
+                chunks.add(chunk);
+            }
+            return chunks;
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.FINE, "Cannot parse a chunk of " + name, e.getCause());
+            return null;
+        } finally {
+            /* the chunks not started yet when the file is given to the single parser, the pool is shared */
+            for(ForkJoinTask<Chunk> task : tasks) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    private static Chunk parseChunk(ReadableByteChannel range, String name) throws IOException {
+        List<double[]> rows = new ArrayList<>();
+        ReleaseIndex.Builder releaseIndex = new ReleaseIndex.Builder();
+        try(DatasetParser parser = new DatasetParser(range, name, false)) {
+            while(parser.next()) {
+                rows.add(DatasetLoader.readValues(parser));
+                releaseIndex.addRow(parser.getRelease(), parser.isBuggy());
+            }
+            return new Chunk(rows, releaseIndex.build(), parser.hasUnterminatedRecord());
+        }
+    }
+
+    /*
+     * offsets of the chunks: the first row, the first row of a release after every cut, the end of the file.
+     * The releases after the cuts are looked for in parallel, a release longer than a chunk is found by several.
+     */
+    private static long[] findBoundaries(ForkJoinPool pool, FileChannel channel, int parallelism)
+            throws IOException, ExecutionException, InterruptedException {
+        long size = channel.size();
+        long firstRow = new Scanner(channel, 0).skipLine();
+        int nChunks = (int) Math.max(1, Math.min((long) parallelism * CHUNKS_PER_THREAD, (size - firstRow) / MIN_CHUNK_BYTES));
+        List<ForkJoinTask<Long>> releaseStarts = new ArrayList<>();
+        for(int c = 1; c < nChunks; c++) {
+            long cut = firstRow + (size - firstRow) * c / nChunks;
+            releaseStarts.add(pool.submit(() -> nextReleaseStart(channel, cut, size)));
+        }
+        long[] boundaries = new long[nChunks + 1];
+        int nBoundaries = 0;
+        boundaries[nBoundaries++] = firstRow;
+        for(ForkJoinTask<Long> releaseStart : releaseStarts) {
+            long boundary = releaseStart.get();
+            if(boundary > boundaries[nBoundaries - 1] && boundary < size) {
+                boundaries[nBoundaries++] = boundary;
+            }
+        }
+        boundaries[nBoundaries++] = size;
+        return Arrays.copyOf(boundaries, nBoundaries);
+    }
+
+    /* start of the first line after position whose release differs from the one of the line before it */
+    private static long nextReleaseStart(FileChannel channel, long position, long size) throws IOException {
+        Scanner scanner = new Scanner(channel, position);
+        long line = scanner.skipLine();
+        if(line >= size) {
+            return size;
+        }
+        byte[] release = scanner.readRelease();
+        while(true) {
+            line = scanner.skipLine();
+            if(line >= size) {
+                return size;
+            }
+            if(!Arrays.equals(release, scanner.readRelease())) {
+                return line;
+            }
+        }
+    }
+
+    private static class Chunk {
+        private final List<double[]> rows;
+        private final ReleaseIndex releaseIndex;
+        private final boolean unterminated;
+
+        private Chunk(List<double[]> rows, ReleaseIndex releaseIndex, boolean unterminated) {
+            this.rows = rows;
+            this.releaseIndex = releaseIndex;
+            this.unterminated = unterminated;
+        }
+    }
+
+    /* forward byte reader of a file from a position, with positional reads so that scanners do not share a position */
+    private static class Scanner {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        /* file offset of the first byte of the buffer */
+        private long bufferStart;
+
+        private Scanner(FileChannel channel, long position) {
+            this.channel = channel;
+            this.bufferStart = position;
+            buffer.flip();
+        }
+
+        /* -1 at the end of the file */
+        private int next() throws IOException {
+            if(!buffer.hasRemaining()) {
+                bufferStart += buffer.limit();
+                buffer.clear();
+                if(channel.read(buffer, bufferStart) <= 0) {
+                    buffer.limit(0);
+                    return -1;
+                }
+                buffer.flip();
+            }
+            return buffer.get();
+        }
+
+        private long position() {
+            return bufferStart + buffer.position();
+        }
+
+        /* offset of the start of the next line, or of the end of the file */
+        private long skipLine() throws IOException {
+            int b;
+            do {
+                b = next();
+            } while(b != -1 && b != '\n');
+            return position();
+        }
+
+        /* the first field of the line starting at the current position, which is left at the end of the field */
+        private byte[] readRelease() throws IOException {
+            byte[] release = new byte[16];
+            int length = 0;
+            int b;
+            while(true) {
+                b = next();
+                if(b == -1 || b == ',' || b == '\n') {
+                    break;
+                }
+                if(length == release.length) {
+                    release = Arrays.copyOf(release, length * 2);
+                }
+                release[length++] = (byte) b;
+            }
+            if(b == '\n') {
+                /* a line without commas, the next skipLine must not skip the line after it */
+                buffer.position(buffer.position() - 1);
+            }
+            return Arrays.copyOf(release, length);
+        }
+    }
+
+    /* the bytes [start, end) of a file, read with positional reads so that the chunks can share the channel */
+    private static class RangeChannel implements ReadableByteChannel {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        private RangeChannel(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read(ByteBuffer destination) throws IOException {
+            if(position >= end) {
+                return -1;
+            }
+            int limit = destination.limit();
+            destination.limit((int) Math.min(limit, destination.position() + end - position));
+            try {
+                int n = channel.read(destination, position);
+                if(n > 0) {
+                    position += n;
+                }
+                return n;
+            } finally {
+                destination.limit(limit);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+            /* the channel is closed by the loader once every chunk is parsed */
+        }
+    }
+}
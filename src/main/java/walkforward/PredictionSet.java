@@ -0,0 +1,131 @@
+package walkforward;
+
+import weka.classifiers.CostMatrix;
+import weka.classifiers.Evaluation;
+import weka.classifiers.evaluation.NominalPrediction;
+import weka.classifiers.evaluation.Prediction;
+
+import java.util.List;
+
+/*
+ * Probability of the positive class (buggy = yes) and actual class of every testing instance of an evaluation.
+ * Any decision rule on the same model, a cost matrix or a threshold, is then derived from these two arrays
+ * without predicting again. Counts and metrics follow Evaluation: precision and recall are NaN without predicted
+ * or actual positives and kappa is 1 when the chance agreement is 1.
+ */
+public class PredictionSet {
+    private static final int POSITIVE = 1;
+
+    private final double[] positiveProbabilities;
+    private final boolean[] positives;
+    private final double auc;
+
+    private PredictionSet(double[] positiveProbabilities, boolean[] positives) {
+        this.positiveProbabilities = positiveProbabilities;
+        this.positives = positives;
+        this.auc = computeAuc(positiveProbabilities, positives);
+    }
+
+    static PredictionSet of(double[] positiveProbabilities, boolean[] positives) {
+        return new PredictionSet(positiveProbabilities, positives);
+    }
+
+    /* null when the evaluation discarded its predictions */
+    public static PredictionSet of(Evaluation evaluation) {
+        List<Prediction> predictions = evaluation.predictions();
+        if(predictions == null) {
+            return null;
+        }
+        double[] positiveProbabilities = new double[predictions.size()];
+        boolean[] positives = new boolean[predictions.size()];
+        for(int i = 0; i < predictions.size(); i++) {
+            NominalPrediction prediction = (NominalPrediction) predictions.get(i);
+            positiveProbabilities[i] = prediction.distribution()[POSITIVE];
+            positives[i] = (int) prediction.actual() == POSITIVE;
+        }
+        return new PredictionSet(positiveProbabilities, positives);
+    }
+
+    public int size() {
+        return positives.length;
+    }
+
+    public double getAuc() {
+        return auc;
+    }
+
+    /* yes when its probability is above the threshold, so that 0.5 gives the predictions of Evaluation */
+    public ResultMetrics evaluateThreshold(double threshold) {
+        long truePositive = 0;
+        long falsePositive = 0;
+        for(int i = 0; i < positives.length; i++) {
+            if(positiveProbabilities[i] > threshold) {
+                if(positives[i]) {
+                    truePositive++;
+                } else {
+                    falsePositive++;
+                }
+            }
+        }
+        return createMetrics(truePositive, falsePositive);
+    }
+
+    /* the class with the minimum expected cost, no on ties, like MinimumExpectedCostClassifier */
+    public ResultMetrics evaluateCostMatrix(CostMatrix costMatrix) throws Exception {
+        double noWhenNo = costMatrix.getElement(0, 0);
+        double noWhenYes = costMatrix.getElement(POSITIVE, 0);
+        double yesWhenNo = costMatrix.getElement(0, POSITIVE);
+        double yesWhenYes = costMatrix.getElement(POSITIVE, POSITIVE);
+        long truePositive = 0;
+        long falsePositive = 0;
+        for(int i = 0; i < positives.length; i++) {
+            double probability = positiveProbabilities[i];
+            double costOfNo = (1 - probability) * noWhenNo + probability * noWhenYes;
+            double costOfYes = (1 - probability) * yesWhenNo + probability * yesWhenYes;
+            if(costOfYes < costOfNo) {
+                if(positives[i]) {
+                    truePositive++;
+                } else {
+                    falsePositive++;
+                }
+            }
+        }
+        return createMetrics(truePositive, falsePositive);
+    }
+
+    private ResultMetrics createMetrics(long truePositive, long falsePositive) {
+        long actualPositives = 0;
+        for(boolean positive : positives) {
+            if(positive) {
+                actualPositives++;
+            }
+        }
+        long n = positives.length;
+        long falseNegative = actualPositives - truePositive;
+        long trueNegative = n - actualPositives - falsePositive;
+        double precision = truePositive + falsePositive == 0 ? Double.NaN : (double) truePositive / (truePositive + falsePositive);
+        double recall = actualPositives == 0 ? Double.NaN : (double) truePositive / actualPositives;
+
+        double observedAgreement = (double) (truePositive + trueNegative) / n;
+        double predictedPositives = truePositive + falsePositive;
+        double chanceAgreement = (predictedPositives * actualPositives + (n - predictedPositives) * (n - actualPositives)) / ((double) n * n);
+        double kappa = chanceAgreement < 1 ? (observedAgreement - chanceAgreement) / (1 - chanceAgreement) : 1;
+
+        return new ResultMetrics(truePositive, falsePositive, trueNegative, falseNegative, precision, recall, auc, kappa);
+    }
+
+    private static double computeAuc(double[] positiveProbabilities, boolean[] positives) {
+        double[] positiveScores = new double[positives.length];
+        double[] negativeScores = new double[positives.length];
+        int nPositives = 0;
+        int nNegatives = 0;
+        for(int i = 0; i < positives.length; i++) {
+            if(positives[i]) {
+                positiveScores[nPositives++] = positiveProbabilities[i];
+            } else {
+                negativeScores[nNegatives++] = positiveProbabilities[i];
+            }
+        }
+        return StreamingEvaluator.computeAuc(positiveScores, nPositives, negativeScores, nNegatives);
+    }
+}
@@ -0,0 +1,120 @@
+package walkforward;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/*
+ * Channel over a stream read by a thread of its own, a few chunks ahead of the reader, so that a decompressing
+ * stream inflates the next chunks while the current one is parsed. The thread owns the stream and closes it.
+ */
+class ReadAheadChannel implements ReadableByteChannel {
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int CHUNKS_AHEAD = 8;
+    private static final ByteBuffer END_OF_INPUT = ByteBuffer.allocate(0);
+
+    private final BlockingQueue<ByteBuffer> chunks = new ArrayBlockingQueue<>(CHUNKS_AHEAD);
+    private final Thread reader;
+    private volatile IOException failure = null;
+    private ByteBuffer chunk = null;
+    private boolean open = true;
+
+    ReadAheadChannel(InputStream input, String name) {
+        this.reader = new Thread(() -> readAhead(input), "read-ahead-" + name);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void readAhead(InputStream input) {
+        try(input) {
+            while(true) {
+                byte[] bytes = new byte[CHUNK_SIZE];
+                int n = input.readNBytes(bytes, 0, CHUNK_SIZE);
+                if(n == 0) {
+                    break;
+                }
+                chunks.put(ByteBuffer.wrap(bytes, 0, n));
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            /* closed by the reader, nobody waits for the rest */
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            chunks.put(END_OF_INPUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer destination) throws IOException {
+        if(!open) {
+            throw new ClosedChannelException();
+        }
+        if(chunk == END_OF_INPUT) {
+            return endOfInput();
+        }
+        int read = 0;
+        while(destination.hasRemaining()) {
+            if(chunk == null || !chunk.hasRemaining()) {
+                /* blocks only when nothing has been read yet */
+                chunk = read == 0 ? take() : chunks.poll();
+                if(chunk == null) {
+                    break;
+                }
+                if(chunk == END_OF_INPUT) {
+                    return read == 0 ? endOfInput() : read;
+                }
+            }
+            int n = Math.min(destination.remaining(), chunk.remaining());
+            ByteBuffer slice = chunk.duplicate();
+            slice.limit(slice.position() + n);
+            destination.put(slice);
+            chunk.position(chunk.position() + n);
+            read += n;
+        }
+        return read;
+    }
+
+    private int endOfInput() throws IOException {
+        if(failure != null) {
+            throw new IOException("Cannot read " + reader.getName(), failure);
+        }
+        return -1;
+    }
+
+    private ByteBuffer take() throws IOException {
+        try {
+            return chunks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + reader.getName(), e);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(!open) {
+            return;
+        }
+        open = false;
+        reader.interrupt();
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
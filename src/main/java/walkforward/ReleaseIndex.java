@@ -0,0 +1,165 @@
+package walkforward;
+
+import myexception.NumberOfReleaseOutOfBoundException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/*
+ * Row offsets and buggy counts of every release of a dataset, stored as prefix sums.
+ * The dataset is expected to be ordered by release, which is what the walk forward relies on.
+ */
+public class ReleaseIndex {
+    private final String[] releases;
+    /* rowOffsets[r] = rows before release r, rowOffsets[releases.length] = total rows */
+    private final int[] rowOffsets;
+    /* buggyOffsets[r] = buggy rows before release r */
+    private final int[] buggyOffsets;
+
+    private ReleaseIndex(String[] releases, int[] rowOffsets, int[] buggyOffsets) {
+        this.releases = releases;
+        this.rowOffsets = rowOffsets;
+        this.buggyOffsets = buggyOffsets;
+    }
+
+    public static ReleaseIndex build(File dataset) throws IOException {
+        Builder builder = new Builder();
+        try(DatasetParser parser = new DatasetParser(dataset)) {
+            while(parser.next()) {
+                builder.addRow(parser.getRelease(), parser.isBuggy());
+            }
+        }
+        return builder.build();
+    }
+
+    public static ReleaseIndex of(String[] releases, int[] rowOffsets, int[] buggyOffsets) {
+        if(rowOffsets.length != releases.length + 1 || buggyOffsets.length != releases.length + 1) {
+            throw new IllegalArgumentException("Expected " + (releases.length + 1) + " offsets per prefix sum");
+        }
+        return new ReleaseIndex(releases.clone(), rowOffsets.clone(), buggyOffsets.clone());
+    }
+
+    /* index of consecutive parts of a dataset, a release at the end of a part and the start of the next is merged */
+    public static ReleaseIndex concat(List<ReleaseIndex> parts) {
+        Builder builder = new Builder();
+        for(ReleaseIndex part : parts) {
+            for(int r = 0; r < part.releases.length; r++) {
+                builder.addRows(part.releases[r], part.getRowCount(r, r + 1), part.getBuggyCount(r, r + 1));
+            }
+        }
+        return builder.build();
+    }
+
+    /* index of the releases in [fromRelease, toRelease), with offsets relative to the first of them */
+    public ReleaseIndex subIndex(int fromRelease, int toRelease) {
+        int nReleases = toRelease - fromRelease;
+        int[] rowPrefix = new int[nReleases + 1];
+        int[] buggyPrefix = new int[nReleases + 1];
+        for(int r = 0; r <= nReleases; r++) {
+            rowPrefix[r] = rowOffsets[fromRelease + r] - rowOffsets[fromRelease];
+            buggyPrefix[r] = buggyOffsets[fromRelease + r] - buggyOffsets[fromRelease];
+        }
+        return new ReleaseIndex(Arrays.copyOfRange(releases, fromRelease, toRelease), rowPrefix, buggyPrefix);
+    }
+
+    public int getNumberOfReleases() {
+        return releases.length;
+    }
+
+    public String getRelease(int release) {
+        return releases[release];
+    }
+
+    public int getTotalInstances() {
+        return rowOffsets[releases.length];
+    }
+
+    public int getReleaseOffset(int release) {
+        return rowOffsets[release];
+    }
+
+    public int getReleaseSize(int release) {
+        return rowOffsets[release + 1] - rowOffsets[release];
+    }
+
+    /* rows of the releases in [fromRelease, toRelease) */
+    public int getRowCount(int fromRelease, int toRelease) {
+        return rowOffsets[toRelease] - rowOffsets[fromRelease];
+    }
+
+    public int getBuggyCount(int fromRelease, int toRelease) {
+        return buggyOffsets[toRelease] - buggyOffsets[fromRelease];
+    }
+
+    public float computePctDefective(int fromRelease, int toRelease) {
+        return (float) getBuggyCount(fromRelease, toRelease) / getRowCount(fromRelease, toRelease);
+    }
+
+    public int getReleaseOfRow(int row) {
+        int position = Arrays.binarySearch(rowOffsets, row);
+        if(position < 0) {
+            return -position - 2;
+        }
+        /* several offsets can be equal only for empty releases, which the builder never creates */
+        return position;
+    }
+
+    public int getTrainingSetSize(int nRun) throws NumberOfReleaseOutOfBoundException {
+        if(nRun >= releases.length) {
+            throw new NumberOfReleaseOutOfBoundException("Number of the run is greater than the number of the versions. " +
+                    "Versions scanned: " + releases.length + "nRun: " + nRun);
+        }
+        return rowOffsets[nRun];
+    }
+
+    /* rows from trainingSetSize up to the end of the release that contains it */
+    public int getTestingSetSize(int trainingSetSize) {
+        if(trainingSetSize >= getTotalInstances()) {
+            return 0;
+        }
+        int release = getReleaseOfRow(trainingSetSize);
+        return rowOffsets[release + 1] - trainingSetSize;
+    }
+
+    public static class Builder {
+        private final List<String> releases = new ArrayList<>();
+        private int[] rowOffsets = new int[16];
+        private int[] buggyOffsets = new int[16];
+        private int rows = 0;
+        private int buggy = 0;
+        private String lastRelease = null;
+
+        public void addRow(String release, boolean isBuggy) {
+            addRows(release, 1, isBuggy ? 1 : 0);
+        }
+
+        public void addRows(String release, int nRows, int nBuggy) {
+            if(!Objects.equals(release, lastRelease)) {
+                int position = releases.size();
+                if(position + 1 >= rowOffsets.length) {
+                    rowOffsets = Arrays.copyOf(rowOffsets, rowOffsets.length * 2);
+                    buggyOffsets = Arrays.copyOf(buggyOffsets, buggyOffsets.length * 2);
+                }
+                rowOffsets[position] = rows;
+                buggyOffsets[position] = buggy;
+                releases.add(release);
+                lastRelease = release;
+            }
+            rows += nRows;
+            buggy += nBuggy;
+        }
+
+        public ReleaseIndex build() {
+            int nReleases = releases.size();
+            int[] rowPrefix = Arrays.copyOf(rowOffsets, nReleases + 1);
+            int[] buggyPrefix = Arrays.copyOf(buggyOffsets, nReleases + 1);
+            rowPrefix[nReleases] = rows;
+            buggyPrefix[nReleases] = buggy;
+            return new ReleaseIndex(releases.toArray(new String[0]), rowPrefix, buggyPrefix);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package walkforward;
+
+import weka.classifiers.Evaluation;
+
+/* The metrics of a result row, for the positive class (buggy = yes) */
+public class ResultMetrics {
+    private final double truePositive;
+    private final double falsePositive;
+    private final double trueNegative;
+    private final double falseNegative;
+    private final double precision;
+    private final double recall;
+    private final double auc;
+    private final double kappa;
+
+    public ResultMetrics(double truePositive, double falsePositive, double trueNegative, double falseNegative, double precision,
+                         double recall, double auc, double kappa) {
+        this.truePositive = truePositive;
+        this.falsePositive = falsePositive;
+        this.trueNegative = trueNegative;
+        this.falseNegative = falseNegative;
+        this.precision = precision;
+        this.recall = recall;
+        this.auc = auc;
+        this.kappa = kappa;
+    }
+
+    public static ResultMetrics of(Evaluation eval) {
+        return new ResultMetrics(eval.numTruePositives(1), eval.numFalsePositives(1), eval.numTrueNegatives(1),
+                eval.numFalseNegatives(1), eval.precision(1), eval.recall(1), eval.areaUnderROC(1), eval.kappa());
+    }
+
+    public double getTruePositive() {
+        return truePositive;
+    }
+
+    public double getFalsePositive() {
+        return falsePositive;
+    }
+
+    public double getTrueNegative() {
+        return trueNegative;
+    }
+
+    public double getFalseNegative() {
+        return falseNegative;
+    }
+
+    public double getPrecision() {
+        return precision;
+    }
+
+    public double getRecall() {
+        return recall;
+    }
+
+    public double getAuc() {
+        return auc;
+    }
+
+    public double getKappa() {
+        return kappa;
+    }
+}
@@ -0,0 +1,140 @@
+package walkforward;
+
+import com.opencsv.CSVWriter;
+import utils.CSVRow;
+import weka.classifiers.Evaluation;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Appends result lines to the output file from a single writer thread.
+ * Rows are queued by the callers and converted to CSV on the writer thread, which flushes every batchSize rows,
+ * every flushIntervalMillis and on close. When a checkpoint journal is given, the rows of every flush are journaled
+ * right after it.
+ * A row that cannot be written, or a cell without an evaluation, stops the writer: the failure is thrown by the next
+ * write and by close, so that the run fails instead of leaving a truncated result file.
+ */
+public class ResultSink implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(ResultSink.class.getName());
+    private static final ResultLine END = new ResultLine(null, null);
+
+    private final BlockingQueue<ResultLine> queue = new LinkedBlockingQueue<>();
+    private final CSVWriter csvWriter;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Thread writerThread;
+    private final CheckpointJournal checkpointJournal;
+    private final List<CSVRow> unjournaled = new ArrayList<>();
+    private final String outputFile;
+    /* the first failure of the writer thread, which has stopped writing */
+    private volatile IOException failure = null;
+
+    public ResultSink(String outputFile, int batchSize, long flushIntervalMillis) throws IOException {
+        this(outputFile, batchSize, flushIntervalMillis, null);
+    }
+
+    public ResultSink(String outputFile, int batchSize, long flushIntervalMillis, CheckpointJournal checkpointJournal) throws IOException {
+        this.checkpointJournal = checkpointJournal;
+        this.outputFile = outputFile;
+        this.csvWriter = new CSVWriter(new FileWriter(outputFile, true));
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.writerThread = new Thread(this::writeLoop, "result-sink-" + outputFile);
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    public void write(CSVRow csvRow, Evaluation evaluation) throws IOException {
+        write(csvRow, evaluation != null ? ResultMetrics.of(evaluation) : null);
+    }
+
+    public void write(CSVRow csvRow, ResultMetrics metrics) throws IOException {
+        checkFailure();
+        queue.add(new ResultLine(csvRow, metrics));
+    }
+
+    private void checkFailure() throws IOException {
+        if(failure != null) {
+            throw new IOException("Cannot write the results to " + outputFile, failure);
+        }
+    }
+
+    private void writeLoop() {
+        int pending = 0;
+        long lastFlush = System.nanoTime();
+        try {
+            while(true) {
+                long wait = flushIntervalNanos - (System.nanoTime() - lastFlush);
+                ResultLine resultLine = queue.poll(Math.max(wait, 0), TimeUnit.NANOSECONDS);
+                if(resultLine == END) {
+                    break;
+                }
+                if(resultLine != null && resultLine.metrics == null) {
+                    /* the rows before it are kept and journaled, the cell is computed again on resume */
+                    flush();
+                    failure = new IOException("No evaluation for " + resultLine.csvRow.getClassifier() + " on "
+                            + resultLine.csvRow.getDataset() + " at release " + resultLine.csvRow.getnTrainingRelease());
+                    return;
+                } else if(resultLine != null) {
+                    csvWriter.writeNext(WalkForwardUtils.createResultLine(resultLine.csvRow, resultLine.metrics));
+                    unjournaled.add(resultLine.csvRow);
+                    pending++;
+                }
+                if(pending >= batchSize || (pending > 0 && System.nanoTime() - lastFlush >= flushIntervalNanos)) {
+                    flush();
+                    pending = 0;
+                    lastFlush = System.nanoTime();
+                } else if(pending == 0) {
+                    lastFlush = System.nanoTime();
+                }
+            }
+            flush();
+        } catch (InterruptedException e) {
+            failure = new InterruptedIOException("Result writer interrupted");
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "I/O Exception in ResultSink", e);
+            failure = e;
+        }
+    }
+
+    private void flush() throws IOException {
+        csvWriter.flush();
+        if(checkpointJournal != null && !unjournaled.isEmpty()) {
+            checkpointJournal.record(unjournaled);
+        }
+        unjournaled.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        queue.add(END);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            csvWriter.close();
+        }
+        checkFailure();
+    }
+
+    private static class ResultLine {
+        private final CSVRow csvRow;
+        private final ResultMetrics metrics;
+
+        private ResultLine(CSVRow csvRow, ResultMetrics metrics) {
+            this.csvRow = csvRow;
+            this.metrics = metrics;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package walkforward;
+
+import myexception.NumberOfReleaseOutOfBoundException;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.io.IOException;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/*
+ * Dataset that keeps on the heap only the releases the walk forward still reads, the others stay in the column store.
+ * A release is loaded the first time it is read and dropped by discardReleasesBefore, so a step holds its sliding
+ * training window and its testing release; the config only allows streaming with a sliding window, since a classifier
+ * is trained on instances on the heap and an expanding window would hold the whole history. When a step does not fit
+ * the heap budget it fails, rather than training on fewer releases than the other datasets: the walk forward then needs
+ * a shorter training window or a larger budget. getInstances is the empty header of the dataset.
+ */
+public class StreamingDataset extends WalkForwardDataset {
+    /* a DenseInstance and the wrapper of a row view, the array header of the values and a few list references */
+    private static final long ROW_OVERHEAD_BYTES = 96;
+
+    private final ColumnarDataset columnarDataset;
+    /* first release of the column store that is part of this dataset */
+    private final int releaseOffset;
+    private final String relationName;
+    private final long maxRows;
+    private final NavigableMap<Integer, Instances> loadedReleases = new TreeMap<>();
+
+    private StreamingDataset(ColumnarDataset columnarDataset, int fromRelease, int toRelease, String relationName, long heapBudget) {
+        super(DatasetLoader.createHeader(relationName, 0), columnarDataset.getReleaseIndex().subIndex(fromRelease, toRelease));
+        this.columnarDataset = columnarDataset;
+        this.releaseOffset = fromRelease;
+        this.relationName = relationName;
+        long rowBytes = ROW_OVERHEAD_BYTES + (long) getInstances().numAttributes() * Double.BYTES;
+        this.maxRows = heapBudget / rowBytes;
+    }
+
+    /* releases in [fromRelease, toRelease) of the column store, which is closed with the dataset */
+    public static StreamingDataset open(ColumnarDataset columnarDataset, int fromRelease, int toRelease, String relationName, long heapBudget) {
+        return new StreamingDataset(columnarDataset, fromRelease, toRelease, relationName, heapBudget);
+    }
+
+    @Override
+    public Instances getTrainingSet(int nRun) throws NumberOfReleaseOutOfBoundException {
+        getReleaseIndex().getTrainingSetSize(nRun);
+        return getReleases(0, nRun);
+    }
+
+    @Override
+    public Instances getTestingSet(int nRun) throws NumberOfReleaseOutOfBoundException {
+        getReleaseIndex().getTrainingSetSize(nRun);
+        return getReleases(nRun, nRun + 1);
+    }
+
+    @Override
+    public Instances getReleases(int fromRelease, int toRelease) {
+        Instances rows = new Instances(getInstances(), getReleaseIndex().getRowCount(fromRelease, toRelease));
+        for(int r = fromRelease; r < toRelease; r++) {
+            for(Instance instance : getRelease(r)) {
+                rows.add(instance);
+            }
+        }
+        return rows;
+    }
+
+    /* throws when the training window and the testing release of the step do not fit the heap budget */
+    @Override
+    public int getFirstTrainingRelease(int nRun, int trainingWindow) {
+        ReleaseIndex releaseIndex = getReleaseIndex();
+        int firstRelease = super.getFirstTrainingRelease(nRun, trainingWindow);
+        long rows = releaseIndex.getRowCount(firstRelease, nRun + 1);
+        if(rows > maxRows) {
+            int fittingWindow = 0;
+            while(fittingWindow < nRun && releaseIndex.getRowCount(nRun - fittingWindow - 1, nRun + 1) <= maxRows) {
+                fittingWindow++;
+            }
+            String message = "Step " + nRun + " of " + relationName + " needs " + rows + " rows, the heap budget holds " + maxRows
+                    + ": set heapBudgetBytes higher";
+            throw new IllegalStateException(fittingWindow == 0 ? message : message + " or a training window of at most " + fittingWindow + " releases");
+        }
+        return firstRelease;
+    }
+
+    @Override
+    public void discardReleasesBefore(int firstRelease) {
+        loadedReleases.headMap(firstRelease).clear();
+    }
+
+    private Instances getRelease(int release) {
+        return loadedReleases.computeIfAbsent(release, key ->
+                columnarDataset.load(releaseOffset + key, releaseOffset + key + 1, relationName).getInstances());
+    }
+
+    @Override
+    public void close() throws IOException {
+        loadedReleases.clear();
+        columnarDataset.close();
+    }
+}
@@ -0,0 +1,181 @@
+package walkforward;
+
+import weka.classifiers.Classifier;
+import weka.core.BatchPredictor;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.util.Arrays;
+
+/*
+ * Evaluation of a trained classifier on a testing set that only keeps what a result row needs.
+ * Every testing instance goes through distributionForInstance, with its class missing like in Evaluation, and updates
+ * the confusion matrix of the positive class (buggy = yes); its probability goes to the scores of its actual class,
+ * and the AUC is counted on the two sorted arrays. The query instance and the score arrays are reused from one
+ * evaluation to the next, so a thread evaluating many cells allocates nothing per testing instance but what the
+ * classifier itself allocates. The numbers are those of Evaluation: an instance with no class of positive
+ * probability is left out of the confusion matrix, precision and recall are NaN without predicted or actual
+ * positives, kappa is 1 when the chance agreement is 1 and the AUC is the area under the ThresholdCurve.
+ * Testing instances are expected to have unit weight, as every testing set of the walk forward.
+ */
+public class StreamingEvaluator {
+    private static final int POSITIVE = 1;
+    private static final ThreadLocal<StreamingEvaluator> EVALUATORS = ThreadLocal.withInitial(StreamingEvaluator::new);
+
+    private double[] positiveScores = new double[1024];
+    private double[] negativeScores = new double[1024];
+    private int nPositives;
+    private int nNegatives;
+    private long truePositive;
+    private long falsePositive;
+    private long trueNegative;
+    private long falseNegative;
+
+    /* the evaluator of the calling thread, its results are valid until the thread evaluates again */
+    public static StreamingEvaluator forCurrentThread() {
+        return EVALUATORS.get();
+    }
+
+    public ResultMetrics evaluate(Classifier classifier, Instances testingSet) throws Exception {
+        reset(testingSet.numInstances());
+        if(classifier instanceof BatchPredictor && ((BatchPredictor) classifier).implementsMoreEfficientBatchPrediction()) {
+            /* the classifier predicts the whole set at once, as Evaluation lets it */
+            Instances classMissing = new Instances(testingSet);
+            for(Instance instance : classMissing) {
+                instance.setClassMissing();
+            }
+            double[][] distributions = ((BatchPredictor) classifier).distributionsForInstances(classMissing);
+            for(int i = 0; i < testingSet.numInstances(); i++) {
+                add(distributions[i], testingSet.instance(i));
+            }
+        } else {
+            /* a copy of each instance with its class missing, in the same query object */
+            Query query = new Query(testingSet);
+            for(Instance instance : testingSet) {
+                query.load(instance);
+                add(classifier.distributionForInstance(query), instance);
+            }
+        }
+        return getMetrics();
+    }
+
+    public ResultMetrics getMetrics() {
+        long n = truePositive + falsePositive + trueNegative + falseNegative;
+        long actualPositives = truePositive + falseNegative;
+        long predictedPositives = truePositive + falsePositive;
+        double precision = predictedPositives == 0 ? Double.NaN : (double) truePositive / predictedPositives;
+        double recall = actualPositives == 0 ? Double.NaN : (double) truePositive / actualPositives;
+
+        double observedAgreement = (double) (truePositive + trueNegative) / n;
+        double chanceAgreement = ((double) (n - actualPositives) * (n - predictedPositives) + (double) actualPositives * predictedPositives)
+                / ((double) n * n);
+        double kappa = chanceAgreement < 1 ? (observedAgreement - chanceAgreement) / (1 - chanceAgreement) : 1;
+
+        return new ResultMetrics(truePositive, falsePositive, trueNegative, falseNegative, precision, recall,
+                computeAuc(positiveScores, nPositives, negativeScores, nNegatives), kappa);
+    }
+
+    /* the probabilities of the positive class of the last evaluation, for decision rules applied afterwards */
+    public PredictionSet getPredictions() {
+        int n = nPositives + nNegatives;
+        double[] positiveProbabilities = new double[n];
+        boolean[] positives = new boolean[n];
+        System.arraycopy(positiveScores, 0, positiveProbabilities, 0, nPositives);
+        System.arraycopy(negativeScores, 0, positiveProbabilities, nPositives, nNegatives);
+        Arrays.fill(positives, 0, nPositives, true);
+        return PredictionSet.of(positiveProbabilities, positives);
+    }
+
+    private void reset(int capacity) {
+        if(positiveScores.length < capacity) {
+            positiveScores = new double[capacity];
+            negativeScores = new double[capacity];
+        }
+        nPositives = 0;
+        nNegatives = 0;
+        truePositive = 0;
+        falsePositive = 0;
+        trueNegative = 0;
+        falseNegative = 0;
+    }
+
+    private void add(double[] distribution, Instance instance) {
+        if(instance.classIsMissing()) {
+            return;
+        }
+        boolean positive = (int) instance.classValue() == POSITIVE;
+        double score = distribution[POSITIVE];
+        if(positive) {
+            positiveScores[nPositives++] = score;
+        } else {
+            negativeScores[nNegatives++] = score;
+        }
+        /* the first class of highest positive probability, none when every probability is 0 */
+        int predicted = Utils.maxIndex(distribution);
+        if(distribution[predicted] <= 0) {
+            return;
+        }
+        if(predicted == POSITIVE) {
+            if(positive) {
+                truePositive++;
+            } else {
+                falsePositive++;
+            }
+        } else if(positive) {
+            falseNegative++;
+        } else {
+            trueNegative++;
+        }
+    }
+
+    /*
+     * Mann-Whitney statistic: the pairs of a positive and a negative where the positive scores higher, ties count one
+     * half, over the number of pairs. The arrays are sorted in place. The count is exact, so the result is the same
+     * correctly rounded quotient as the area under the ThresholdCurve; NaN without positives or negatives.
+     */
+    static double computeAuc(double[] positiveScores, int nPositives, double[] negativeScores, int nNegatives) {
+        if(nPositives == 0 || nNegatives == 0) {
+            return Double.NaN;
+        }
+        Arrays.sort(positiveScores, 0, nPositives);
+        Arrays.sort(negativeScores, 0, nNegatives);
+        /* twice the statistic, to count the halves in a long */
+        long twiceCount = 0;
+        int below = 0;
+        int belowOrTied = 0;
+        for(int p = 0; p < nPositives; p++) {
+            double score = positiveScores[p];
+            while(below < nNegatives && negativeScores[below] < score) {
+                below++;
+            }
+            if(belowOrTied < below) {
+                belowOrTied = below;
+            }
+            while(belowOrTied < nNegatives && negativeScores[belowOrTied] <= score) {
+                belowOrTied++;
+            }
+            twiceCount += 2L * below + (belowOrTied - below);
+        }
+        return twiceCount / 2.0 / ((double) nPositives * nNegatives);
+    }
+
+    /* setValue copies the values of a DenseInstance on every call, the query writes them in place */
+    private static class Query extends DenseInstance {
+        private static final long serialVersionUID = 1L;
+
+        private Query(Instances dataset) {
+            super(dataset.numAttributes());
+            setDataset(dataset);
+        }
+
+        private void load(Instance instance) {
+            for(int a = 0; a < m_AttValues.length; a++) {
+                m_AttValues[a] = instance.value(a);
+            }
+            m_AttValues[classIndex()] = Utils.missingValue();
+            m_Weight = instance.weight();
+        }
+    }
+}
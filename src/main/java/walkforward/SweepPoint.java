@@ -0,0 +1,49 @@
+package walkforward;
+
+import weka.classifiers.CostMatrix;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * A decision rule of the sweep, applied to the stored predictions of a cell. Its label goes in the cost
+ * sensitivity column of the row: "1:<ratio>" for a cost ratio, "t=<threshold>" for a decision threshold.
+ */
+public class SweepPoint {
+    private final String label;
+    /* null for a threshold */
+    private final CostMatrix costMatrix;
+    private final double threshold;
+
+    private SweepPoint(String label, CostMatrix costMatrix, double threshold) {
+        this.label = label;
+        this.costMatrix = costMatrix;
+        this.threshold = threshold;
+    }
+
+    public static List<SweepPoint> of(WalkForwardConfig config) {
+        List<SweepPoint> sweepPoints = new ArrayList<>();
+        for(double costRatio : config.getCostRatios()) {
+            sweepPoints.add(new SweepPoint("1:" + format(costRatio), WalkForwardUtils.createCostMatrix(1, costRatio), Double.NaN));
+        }
+        for(double threshold : config.getDecisionThresholds()) {
+            sweepPoints.add(new SweepPoint("t=" + format(threshold), null, threshold));
+        }
+        return sweepPoints;
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public ResultMetrics evaluate(PredictionSet predictions) throws Exception {
+        if(costMatrix != null) {
+            return predictions.evaluateCostMatrix(costMatrix);
+        }
+        return predictions.evaluateThreshold(threshold);
+    }
+}
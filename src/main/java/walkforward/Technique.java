@@ -0,0 +1,39 @@
+package walkforward;
+
+import utils.StringConstant;
+
+public enum Technique {
+    NONE(false, false),
+    FEATURE_SELECTION(true, false),
+    COST_SENSITIVITY(false, true),
+    FEATURE_SELECTION_COST_SENSITIVITY(true, true);
+
+    private final boolean featureSelection;
+    private final boolean costSensitivity;
+
+    Technique(boolean featureSelection, boolean costSensitivity) {
+        this.featureSelection = featureSelection;
+        this.costSensitivity = costSensitivity;
+    }
+
+    public boolean isFeatureSelection() {
+        return featureSelection;
+    }
+
+    public boolean isCostSensitivity() {
+        return costSensitivity;
+    }
+
+    public String getFeatureSelectionLabel() {
+        return featureSelection ? StringConstant.YES : StringConstant.NO;
+    }
+
+    public String getCostSensitivityLabel() {
+        return costSensitivity ? StringConstant.YES : StringConstant.NO;
+    }
+
+    /* the technique whose trained model a cost sensitive cell can reuse */
+    public Technique withoutCostSensitivity() {
+        return featureSelection ? FEATURE_SELECTION : NONE;
+    }
+}
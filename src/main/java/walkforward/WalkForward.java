@@ -1,41 +1,33 @@
 package walkforward;
 
+import balancing.Balancing;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
 import com.opencsv.exceptions.CsvException;
 import myexception.SetTypeException;
 import utils.BookkeeperData;
-import utils.CSVRow;
-import utils.StringConstant;
+import utils.ProjectDescriptor;
 import utils.ZookeeperData;
-import weka.classifiers.Evaluation;
-import weka.classifiers.bayes.NaiveBayes;
-import weka.classifiers.lazy.IBk;
-import weka.classifiers.trees.RandomForest;
-import weka.core.Instances;
-import weka.core.converters.ConverterUtils.DataSource;
-import weka.filters.Filter;
-import weka.filters.unsupervised.attribute.Remove;
 
 import java.io.*;
+import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
-import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
 public class WalkForward {
-    private static final Logger LOGGER = LogManager.getLogManager().getLogger(WalkForward.class.getName());
+    private static final Logger LOGGER = Logger.getLogger(WalkForward.class.getName());
 
     private WalkForward() {}
 
     public static InputStream getSet(File dataset, SetType setType, int trainingSetSize, int testingSetSize) throws SetTypeException {
         InputStream inputStream = null;
 
-        try(CSVReader csvReader = new CSVReaderBuilder(new FileReader(dataset)).withSkipLines(1).build();
+        try(CSVReader csvReader = new CSVReaderBuilder(DatasetInput.openReader(dataset)).withSkipLines(1).build();
             ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
             PrintWriter writer = new PrintWriter(new BufferedOutputStream(byteArrayOutputStream))) {
             /* header */
-            WalkForwardUtils.writeHeader(writer, dataset.getName());
+            WalkForwardUtils.writeHeader(writer, DatasetInput.getName(dataset));
 
             switch (setType) {
                 case TRAINING:
@@ -67,104 +59,29 @@ public class WalkForward {
     }
 
     public static void walkForward(String datasetPath, int releaseToRemoveFromTop, int releaseToRemoveFromBottom, String outputFile, String datasetName) throws Exception {
-        File datasetFile = WalkForwardUtils.removeReleases(datasetPath, releaseToRemoveFromTop, releaseToRemoveFromBottom);
-        int nTrainingRelease = WalkForwardUtils.getNumberOfVersions(datasetFile);
-        WalkForwardUtils.writeCSVHeader(outputFile);
-
-        for(int i = 1; i < nTrainingRelease - 1; i++) {
-            int trainingSetSize = WalkForwardUtils.getTrainingSetSize(datasetFile, i);
-            int testingSetSize = WalkForwardUtils.getTestingSetSize(datasetFile, trainingSetSize);
-            DataSource sourceTraining = new DataSource(WalkForward.getSet(datasetFile, SetType.TRAINING, trainingSetSize, testingSetSize));
-            DataSource sourceTesting = new DataSource(WalkForward.getSet(datasetFile, SetType.TESTING, trainingSetSize, testingSetSize));
-            Instances training = sourceTraining.getDataSet();
-            Instances testing = sourceTesting.getDataSet();
-
-            Remove removeFilter = WalkForwardUtils.createRemoveFilter(training, new int[] {0, 1});
-            Instances newTraining = Filter.useFilter(training, removeFilter);
-            Instances newTesting = Filter.useFilter(testing, removeFilter);
-
-            int numAttr = newTraining.numAttributes();
-            newTraining.setClassIndex(numAttr - 1);
-            newTesting.setClassIndex(numAttr - 1);
-
-            Evaluation randomForestEvaluation;
-            Evaluation naiveBayesEvaluation;
-            Evaluation iBkEvaluation;
-            int totalInstances = WalkForwardUtils.countLinesCSV(datasetFile);
-            float pctDataOnTraining = WalkForwardUtils.computePctDataOnTraining(trainingSetSize, totalInstances);
-            float pctDefectiveInTraining = WalkForwardUtils.computePctDefectiveOnDataset(newTraining, trainingSetSize);
-            float pctDefectiveInTesting = WalkForwardUtils.computePctDefectiveOnDataset(newTesting, testingSetSize);
-
-            /* NO feature selection */
-            randomForestEvaluation = WalkForwardUtils.simpleClassify(newTraining, newTesting, new RandomForest());
-            naiveBayesEvaluation = WalkForwardUtils.simpleClassify(newTraining, newTesting, new NaiveBayes());
-            iBkEvaluation = WalkForwardUtils.simpleClassify(newTraining, newTesting, new IBk());
-
-            WalkForwardUtils.writeResultLine(new CSVRow(outputFile, datasetName, i, pctDataOnTraining, pctDefectiveInTraining,
-                    pctDefectiveInTesting, StringConstant.RANDOM_FOREST, StringConstant.NO, StringConstant.NO, StringConstant.NO),
-                    randomForestEvaluation);
-            WalkForwardUtils.writeResultLine(new CSVRow(outputFile, datasetName, i, pctDataOnTraining, pctDefectiveInTraining,
-                    pctDefectiveInTesting, StringConstant.NAIVE_BAYES, StringConstant.NO, StringConstant.NO, StringConstant.NO),
-                    naiveBayesEvaluation);
-            WalkForwardUtils.writeResultLine(new CSVRow(outputFile, datasetName, i, pctDataOnTraining, pctDefectiveInTraining,
-                    pctDefectiveInTesting, StringConstant.IBK, StringConstant.NO, StringConstant.NO, StringConstant.NO),
-                    iBkEvaluation);
-
-
-            /* Feature Selection */
-            randomForestEvaluation = WalkForwardUtils.attributeSelection(newTraining, newTesting, new RandomForest());
-            naiveBayesEvaluation = WalkForwardUtils.attributeSelection(newTraining, newTesting, new NaiveBayes());
-            iBkEvaluation = WalkForwardUtils.attributeSelection(newTraining, newTesting, new IBk());
-
-            WalkForwardUtils.writeResultLine(new CSVRow(outputFile, datasetName, i, pctDataOnTraining, pctDefectiveInTraining,
-                    pctDefectiveInTesting, StringConstant.RANDOM_FOREST, StringConstant.NO, StringConstant.YES, StringConstant.NO),
-                    randomForestEvaluation);
-            WalkForwardUtils.writeResultLine(new CSVRow(outputFile, datasetName, i, pctDataOnTraining, pctDefectiveInTraining,
-                    pctDefectiveInTesting, StringConstant.NAIVE_BAYES, StringConstant.NO, StringConstant.YES, StringConstant.NO),
-                    naiveBayesEvaluation);
-            WalkForwardUtils.writeResultLine(new CSVRow(outputFile, datasetName, i, pctDataOnTraining, pctDefectiveInTraining,
-                    pctDefectiveInTesting, StringConstant.IBK, StringConstant.NO, StringConstant.YES, StringConstant.NO),
-                    iBkEvaluation);
-
-            /* Cost Sensitivity */
-            randomForestEvaluation = WalkForwardUtils.costSensitivityEval(newTraining, newTesting, new RandomForest(), 1, 10);
-            naiveBayesEvaluation = WalkForwardUtils.costSensitivityEval(newTraining, newTesting, new NaiveBayes(), 1, 10);
-            iBkEvaluation = WalkForwardUtils.costSensitivityEval(newTraining, newTesting, new IBk(), 1, 10);
-
-            WalkForwardUtils.writeResultLine(new CSVRow(outputFile, datasetName, i, pctDataOnTraining, pctDefectiveInTraining,
-                    pctDefectiveInTesting, StringConstant.RANDOM_FOREST, StringConstant.NO, StringConstant.NO, StringConstant.YES),
-                    randomForestEvaluation);
-            WalkForwardUtils.writeResultLine(new CSVRow(outputFile, datasetName, i, pctDataOnTraining, pctDefectiveInTraining,
-                    pctDefectiveInTesting, StringConstant.NAIVE_BAYES, StringConstant.NO, StringConstant.NO, StringConstant.YES),
-                    naiveBayesEvaluation);
-            WalkForwardUtils.writeResultLine(new CSVRow(outputFile, datasetName, i, pctDataOnTraining, pctDefectiveInTraining,
-                    pctDefectiveInTesting, StringConstant.IBK, StringConstant.NO, StringConstant.NO, StringConstant.YES),
-                    iBkEvaluation);
-
-            /* Feature Selection & Cost sensitivity */
-            randomForestEvaluation = WalkForwardUtils.featureSelectionThenCostSensitivity(newTraining, newTesting, new RandomForest(), 1, 10);
-            naiveBayesEvaluation = WalkForwardUtils.featureSelectionThenCostSensitivity(newTraining, newTesting, new NaiveBayes(), 1, 10);
-            iBkEvaluation = WalkForwardUtils.featureSelectionThenCostSensitivity(newTraining, newTesting, new IBk(), 1, 10);
-
-            WalkForwardUtils.writeResultLine(new CSVRow(outputFile, datasetName, i, pctDataOnTraining, pctDefectiveInTraining,
-                    pctDefectiveInTesting, StringConstant.RANDOM_FOREST, StringConstant.NO, StringConstant.YES, StringConstant.YES),
-                    randomForestEvaluation);
-            WalkForwardUtils.writeResultLine(new CSVRow(outputFile, datasetName, i, pctDataOnTraining, pctDefectiveInTraining,
-                    pctDefectiveInTesting, StringConstant.NAIVE_BAYES, StringConstant.NO, StringConstant.YES, StringConstant.YES),
-                    naiveBayesEvaluation);
-            WalkForwardUtils.writeResultLine(new CSVRow(outputFile, datasetName, i, pctDataOnTraining, pctDefectiveInTraining,
-                    pctDefectiveInTesting, StringConstant.IBK, StringConstant.NO, StringConstant.YES, StringConstant.YES),
-                    iBkEvaluation);
-
-        }
+        WalkForward.walkForward(datasetPath, releaseToRemoveFromTop, releaseToRemoveFromBottom, outputFile, datasetName, new WalkForwardConfig());
+    }
 
+    public static void walkForward(String datasetPath, int releaseToRemoveFromTop, int releaseToRemoveFromBottom, String outputFile, String datasetName,
+                                   WalkForwardConfig config) throws Exception {
+        new WalkForwardRunner(config).walkForward(datasetPath, releaseToRemoveFromTop, releaseToRemoveFromBottom, outputFile, datasetName);
     }
 
     public static void main(String [] args) throws Exception {
-        WalkForward.walkForward(ZookeeperData.DATASET, ZookeeperData.RELEASE_TO_REMOVE_FROM_TOP, ZookeeperData.RELEASE_TO_REMOVE_FROM_BOTTOM,
-                ZookeeperData.RESULT, ZookeeperData.DATASET_NAME);
-        WalkForward.walkForward(BookkeeperData.DATASET, BookkeeperData.RELEASE_TO_REMOVE_FROM_TOP, BookkeeperData.RELEASE_TO_REMOVE_FROM_BOTTOM,
-                BookkeeperData.RESULT, BookkeeperData.DATASET_NAME);
+        List<ProjectDescriptor> projects = Arrays.asList(
+                new ProjectDescriptor(ZookeeperData.DATASET, ZookeeperData.DATASET_NAME, ZookeeperData.RELEASE_TO_REMOVE_FROM_TOP,
+                        ZookeeperData.RELEASE_TO_REMOVE_FROM_BOTTOM, ZookeeperData.RESULT),
+                new ProjectDescriptor(BookkeeperData.DATASET, BookkeeperData.DATASET_NAME, BookkeeperData.RELEASE_TO_REMOVE_FROM_TOP,
+                        BookkeeperData.RELEASE_TO_REMOVE_FROM_BOTTOM, BookkeeperData.RESULT));
+        /* only the unbalanced training sets unless balancings are named, e.g. NONE SMOTE */
+        WalkForwardConfig config = new WalkForwardConfig();
+        if(args.length > 0) {
+            config.setBalancings(Arrays.stream(args).map(Balancing::valueOf).toArray(Balancing[]::new));
+        }
+        List<ProjectDescriptor> failed = new WalkForwardBatch(config).run(projects);
+        if(!failed.isEmpty()) {
+            throw new IllegalStateException(failed.size() + " walk forward(s) failed, see the log for details");
+        }
     }
 
 }
@@ -0,0 +1,58 @@
+package walkforward;
+
+import utils.ProjectDescriptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Runs the walk forward of several projects at the same time.
+ * The cells of every project share one CellScheduler of nThreads cores, while at most maxConcurrentProjects projects
+ * keep their dataset loaded and submit cells. Every project has its own result file; when a project fails, its cells
+ * still queued are cancelled so that they do not take the cores of the others.
+ */
+public class WalkForwardBatch {
+    private static final Logger LOGGER = Logger.getLogger(WalkForwardBatch.class.getName());
+
+    private final WalkForwardConfig config;
+
+    public WalkForwardBatch(WalkForwardConfig config) {
+        this.config = config;
+    }
+
+    /* returns the projects that failed, the others are completed even when one of them fails */
+    public List<ProjectDescriptor> run(List<ProjectDescriptor> projects) throws InterruptedException {
+        CellScheduler cellScheduler = new CellScheduler(config);
+        ExecutorService projectExecutor = Executors.newFixedThreadPool(Math.min(config.getMaxConcurrentProjects(), Math.max(1, projects.size())));
+        List<ProjectDescriptor> failed = new ArrayList<>();
+        try {
+            WalkForwardRunner runner = new WalkForwardRunner(config, cellScheduler);
+            List<Future<?>> results = new ArrayList<>();
+            for(ProjectDescriptor project : projects) {
+                results.add(projectExecutor.submit(() -> {
+                    runner.walkForward(project.getDatasetPath(), project.getReleaseToRemoveFromTop(), project.getReleaseToRemoveFromBottom(),
+                            project.getOutputFile(), project.getDatasetName());
+                    return null;
+                }));
+            }
+            for(int i = 0; i < projects.size(); i++) {
+                try {
+                    results.get(i).get();
+                } catch (ExecutionException e) {
+                    LOGGER.log(Level.SEVERE, "Walk forward failed for " + projects.get(i).getDatasetName(), e.getCause());
+                    failed.add(projects.get(i));
+                }
+            }
+        } finally {
+            projectExecutor.shutdownNow();
+            cellScheduler.shutdownNow();
+        }
+        return failed;
+    }
+}
@@ -0,0 +1,241 @@
+package walkforward;
+
+import balancing.Balancing;
+import instrumentation.MetricsContext;
+import instrumentation.MetricsRecorder;
+import instrumentation.StageMetrics;
+import utils.CSVRow;
+import weka.classifiers.AbstractClassifier;
+import weka.core.Instances;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * One (step, classifier, technique) evaluation of the walk forward.
+ * Cells only read the shared training and testing sets, so they can run on any thread and in any order.
+ */
+public class WalkForwardCell implements Callable<ResultMetrics> {
+    private final WalkForwardStep step;
+    private final ClassifierType classifierType;
+    private final Technique technique;
+    private final Balancing balancing;
+    private final CSVRow csvRow;
+    private final WalkForwardConfig config;
+    private IncrementalModel incrementalModel = null;
+    private MetricsRecorder metricsRecorder = null;
+    /* completed with the trained model, or null, by the cells other cells depend on */
+    private CompletableFuture<AbstractClassifier> trainedModel = null;
+    /* the trained model of the same step, classifier and feature selection without cost sensitivity */
+    private CompletableFuture<AbstractClassifier> baseModel = null;
+    private AbstractClassifier trainedClassifier = null;
+    private PredictionSet predictions = null;
+    /* threads of a random forest built by the cell, given by the scheduler from the spare cores */
+    private int executionSlots = 1;
+    private long elapsedNanos = 0;
+
+    public WalkForwardCell(WalkForwardStep step, ClassifierType classifierType, Technique technique, CSVRow csvRow, WalkForwardConfig config) {
+        this(step, classifierType, technique, Balancing.NONE, csvRow, config);
+    }
+
+    public WalkForwardCell(WalkForwardStep step, ClassifierType classifierType, Technique technique, Balancing balancing, CSVRow csvRow,
+                           WalkForwardConfig config) {
+        this.step = step;
+        this.classifierType = classifierType;
+        this.technique = technique;
+        this.balancing = balancing;
+        this.csvRow = csvRow;
+        this.config = config;
+    }
+
+    public WalkForwardStep getStep() {
+        return step;
+    }
+
+    public ClassifierType getClassifierType() {
+        return classifierType;
+    }
+
+    public Technique getTechnique() {
+        return technique;
+    }
+
+    public Balancing getBalancing() {
+        return balancing;
+    }
+
+    public CSVRow getCsvRow() {
+        return csvRow;
+    }
+
+    /* an IBk cell searching its neighbours in the KD-tree of KdTreeNearestNeighbours */
+    public boolean isKdTreeNearestNeighbours() {
+        return classifierType == ClassifierType.IBK && config.isKdTreeNearestNeighbours();
+    }
+
+    public void setIncrementalModel(IncrementalModel incrementalModel) {
+        this.incrementalModel = incrementalModel;
+    }
+
+    public boolean hasIncrementalModel() {
+        return incrementalModel != null;
+    }
+
+    public void setMetricsRecorder(MetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder;
+    }
+
+    public void setTrainedModel(CompletableFuture<AbstractClassifier> trainedModel) {
+        this.trainedModel = trainedModel;
+    }
+
+    /*
+     * The executor must start the base cell before this one, which CellScheduler does for cells submitted together,
+     * so that waiting for its model can never take the thread it needs.
+     */
+    public void setBaseModel(CompletableFuture<AbstractClassifier> baseModel) {
+        this.baseModel = baseModel;
+    }
+
+    public boolean hasBaseModel() {
+        return baseModel != null;
+    }
+
+    /* true when the cell trains a random forest of its own, the only classifier that can use several threads */
+    public boolean buildsRandomForest() {
+        return classifierType == ClassifierType.RANDOM_FOREST && incrementalModel == null && baseModel == null;
+    }
+
+    public int getExecutionSlots() {
+        return executionSlots;
+    }
+
+    public void setExecutionSlots(int executionSlots) {
+        this.executionSlots = executionSlots;
+    }
+
+    /* wall time of the last call */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /* depends only on the base seed and on the coordinates of the cell, never on the scheduling */
+    public long getSeed() {
+        long seed = config.getSeed();
+        seed = seed * 31 + step.getNumber();
+        seed = seed * 31 + classifierType.ordinal();
+        seed = seed * 31 + technique.ordinal();
+        /* unbalanced cells keep the seeds they had before balancing existed */
+        if(balancing != Balancing.NONE) {
+            seed = seed * 31 + balancing.ordinal();
+        }
+        return seed;
+    }
+
+    /* shared by every cell of the step with the same balancing */
+    private long getBalancingSeed() {
+        long seed = config.getSeed();
+        seed = seed * 31 + step.getNumber();
+        seed = seed * 31 + balancing.ordinal();
+        return seed;
+    }
+
+    private Instances getTrainingSet() {
+        return step.getTrainingSet(balancing, getBalancingSeed());
+    }
+
+    private Instances getFilteredTrainingSet() {
+        return step.getFilteredTrainingSet(balancing, getBalancingSeed());
+    }
+
+    @Override
+    public ResultMetrics call() throws InterruptedException {
+        long start = System.nanoTime();
+        if(metricsRecorder == null) {
+            try {
+                return evaluate();
+            } finally {
+                elapsedNanos = System.nanoTime() - start;
+            }
+        }
+        MetricsContext previous = StageMetrics.setContext(new MetricsContext(metricsRecorder, csvRow.getDataset(), step.getNumber(),
+                classifierType.getLabel(), getTechniqueLabel()));
+        try {
+            return evaluate();
+        } finally {
+            StageMetrics.setContext(previous);
+            elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    /* kept for the sweep, after the cell has run */
+    public PredictionSet getPredictions() {
+        return predictions;
+    }
+
+    private ResultMetrics evaluate() throws InterruptedException {
+        StreamingEvaluator evaluator = StreamingEvaluator.forCurrentThread();
+        ResultMetrics metrics = null;
+        try {
+            metrics = evaluateCell(evaluator);
+        } finally {
+            /* a failed cell leaves its dependents to train their own model */
+            if(trainedModel != null) {
+                trainedModel.complete(metrics != null ? trainedClassifier : null);
+            }
+        }
+        if(config.isSweep() && metrics != null) {
+            predictions = evaluator.getPredictions();
+        }
+        return metrics;
+    }
+
+    private String getTechniqueLabel() {
+        return balancing == Balancing.NONE ? technique.name() : technique.name() + "+" + balancing.name();
+    }
+
+    private ResultMetrics evaluateCell(StreamingEvaluator evaluator) throws InterruptedException {
+        if(incrementalModel != null) {
+            return incrementalModel.evaluate(step, evaluator);
+        }
+        if(technique.isCostSensitivity() && config.getCostSensitivityMode() == CostSensitivityMode.MINIMUM_EXPECTED_COST) {
+            return evaluateMinimumExpectedCost(evaluator);
+        }
+        AbstractClassifier classifier = classifierType.newClassifier(getSeed(), executionSlots, config.getClassifierOptions(classifierType),
+                config.isKdTreeNearestNeighbours());
+        trainedClassifier = classifier;
+        double costFalsePositive = config.getCostFalsePositive();
+        double costFalseNegative = config.getCostFalseNegative();
+        Instances trainingSet = getTrainingSet();
+        Instances testingSet = step.getTestingSet();
+
+        switch (technique) {
+            case NONE:
+                return WalkForwardUtils.simpleClassify(trainingSet, testingSet, classifier, evaluator);
+            case FEATURE_SELECTION:
+                return WalkForwardUtils.simpleClassify(getFilteredTrainingSet(), step.getFilteredTestingSet(), classifier, evaluator);
+            case COST_SENSITIVITY:
+                return WalkForwardUtils.costSensitivityEval(trainingSet, testingSet, classifier, costFalsePositive, costFalseNegative, evaluator);
+            case FEATURE_SELECTION_COST_SENSITIVITY:
+                return WalkForwardUtils.costSensitivityEval(getFilteredTrainingSet(), step.getFilteredTestingSet(), classifier, costFalsePositive,
+                        costFalseNegative, evaluator);
+            default:
+                throw new IllegalStateException("Unknown technique " + technique);
+        }
+    }
+
+    private ResultMetrics evaluateMinimumExpectedCost(StreamingEvaluator evaluator) {
+        AbstractClassifier classifier = baseModel != null ? baseModel.join() : null;
+        boolean trained = classifier != null;
+        if(!trained) {
+            classifier = classifierType.newClassifier(getSeed(), executionSlots, config.getClassifierOptions(classifierType),
+                    config.isKdTreeNearestNeighbours());
+        }
+        if(technique.isFeatureSelection()) {
+            return WalkForwardUtils.minimumExpectedCostEval(getFilteredTrainingSet(), step.getFilteredTestingSet(), classifier, trained,
+                    config.getCostFalsePositive(), config.getCostFalseNegative(), evaluator);
+        }
+        return WalkForwardUtils.minimumExpectedCostEval(getTrainingSet(), step.getTestingSet(), classifier, trained,
+                config.getCostFalsePositive(), config.getCostFalseNegative(), evaluator);
+    }
+}
@@ -0,0 +1,458 @@
+package walkforward;
+
+import balancing.Balancing;
+import featureselection.FeatureSelectionEngine;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+/*
+ * nThreads, maxConcurrentProjects and heapBudgetBytes default to the cores and the heap of the JVM that reads them,
+ * so they are only written to properties when they were set: a shard worker derives its own defaults.
+ */
+public class WalkForwardConfig {
+    /* 0 until set, for the defaults of the running JVM */
+    private int nThreads = 0;
+    private long seed = 1;
+    private double costFalsePositive = 1;
+    private double costFalseNegative = 10;
+    private int resultBatchSize = 64;
+    private long resultFlushIntervalMillis = 1000;
+    private File featureSelectionCacheDirectory = null;
+    private int featureSelectionCacheSize = 256;
+    private int featureSelectionDiskCacheSize = 4096;
+    private FeatureSelectionEngine featureSelectionEngine = FeatureSelectionEngine.WEKA_CFS;
+    private boolean incrementalTraining = false;
+    private boolean columnarDataset = false;
+    private int maxConcurrentProjects = 0;
+    private boolean metrics = false;
+    private boolean resume = false;
+    private CostSensitivityMode costSensitivityMode = CostSensitivityMode.REWEIGHTING;
+    private double[] costRatios = new double[0];
+    private double[] decisionThresholds = new double[0];
+    private Balancing[] balancings = {Balancing.NONE};
+    private int trainingWindow = 0;
+    private boolean streaming = false;
+    private long heapBudgetBytes = 0;
+    private int fromStep = 1;
+    private int toStep = Integer.MAX_VALUE;
+    private File costModelFile = null;
+    private ClassifierType[] classifierTypes = ClassifierType.values();
+    private Technique[] techniques = Technique.values();
+    private boolean kdTreeNearestNeighbours = false;
+    private final Map<ClassifierType, String> classifierOptions = new EnumMap<>(ClassifierType.class);
+
+    public int getnThreads() {
+        return nThreads > 0 ? nThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    public void setnThreads(int nThreads) {
+        if(nThreads < 1) {
+            throw new IllegalArgumentException("nThreads must be at least 1, got " + nThreads);
+        }
+        this.nThreads = nThreads;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public double getCostFalsePositive() {
+        return costFalsePositive;
+    }
+
+    public void setCostFalsePositive(double costFalsePositive) {
+        this.costFalsePositive = costFalsePositive;
+    }
+
+    public double getCostFalseNegative() {
+        return costFalseNegative;
+    }
+
+    public void setCostFalseNegative(double costFalseNegative) {
+        this.costFalseNegative = costFalseNegative;
+    }
+
+    public int getResultBatchSize() {
+        return resultBatchSize;
+    }
+
+    public void setResultBatchSize(int resultBatchSize) {
+        this.resultBatchSize = resultBatchSize;
+    }
+
+    public long getResultFlushIntervalMillis() {
+        return resultFlushIntervalMillis;
+    }
+
+    public void setResultFlushIntervalMillis(long resultFlushIntervalMillis) {
+        this.resultFlushIntervalMillis = resultFlushIntervalMillis;
+    }
+
+    public File getFeatureSelectionCacheDirectory() {
+        return featureSelectionCacheDirectory;
+    }
+
+    public void setFeatureSelectionCacheDirectory(File featureSelectionCacheDirectory) {
+        this.featureSelectionCacheDirectory = featureSelectionCacheDirectory;
+    }
+
+    public int getFeatureSelectionCacheSize() {
+        return featureSelectionCacheSize;
+    }
+
+    public void setFeatureSelectionCacheSize(int featureSelectionCacheSize) {
+        this.featureSelectionCacheSize = featureSelectionCacheSize;
+    }
+
+    public int getFeatureSelectionDiskCacheSize() {
+        return featureSelectionDiskCacheSize;
+    }
+
+    public void setFeatureSelectionDiskCacheSize(int featureSelectionDiskCacheSize) {
+        this.featureSelectionDiskCacheSize = featureSelectionDiskCacheSize;
+    }
+
+    public FeatureSelectionEngine getFeatureSelectionEngine() {
+        return featureSelectionEngine;
+    }
+
+    public void setFeatureSelectionEngine(FeatureSelectionEngine featureSelectionEngine) {
+        this.featureSelectionEngine = featureSelectionEngine;
+    }
+
+    public boolean isIncrementalTraining() {
+        return incrementalTraining;
+    }
+
+    public void setIncrementalTraining(boolean incrementalTraining) {
+        this.incrementalTraining = incrementalTraining;
+    }
+
+    public boolean isColumnarDataset() {
+        return columnarDataset;
+    }
+
+    public void setColumnarDataset(boolean columnarDataset) {
+        this.columnarDataset = columnarDataset;
+    }
+
+    public int getMaxConcurrentProjects() {
+        return maxConcurrentProjects > 0 ? maxConcurrentProjects : Runtime.getRuntime().availableProcessors();
+    }
+
+    public void setMaxConcurrentProjects(int maxConcurrentProjects) {
+        if(maxConcurrentProjects < 1) {
+            throw new IllegalArgumentException("maxConcurrentProjects must be at least 1, got " + maxConcurrentProjects);
+        }
+        this.maxConcurrentProjects = maxConcurrentProjects;
+    }
+
+    /* when enabled, stage timings are written next to the result file as <result>_metrics.csv */
+    public boolean isMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(boolean metrics) {
+        this.metrics = metrics;
+    }
+
+    /* keep the cells already listed in the checkpoint journal of the result file and only compute the missing ones */
+    public boolean isResume() {
+        return resume;
+    }
+
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    public CostSensitivityMode getCostSensitivityMode() {
+        return costSensitivityMode;
+    }
+
+    public void setCostSensitivityMode(CostSensitivityMode costSensitivityMode) {
+        this.costSensitivityMode = costSensitivityMode;
+    }
+
+    /* false negative to false positive costs of the sweep, the false positive cost being 1 */
+    public double[] getCostRatios() {
+        return costRatios;
+    }
+
+    public void setCostRatios(double... costRatios) {
+        this.costRatios = costRatios.clone();
+    }
+
+    /* the sweep predicts yes above these probabilities of buggy = yes */
+    public double[] getDecisionThresholds() {
+        return decisionThresholds;
+    }
+
+    public void setDecisionThresholds(double... decisionThresholds) {
+        this.decisionThresholds = decisionThresholds.clone();
+    }
+
+    /* the sweep replaces the cost sensitive cells with rows derived from the predictions of the other cells */
+    public boolean isSweep() {
+        return costRatios.length > 0 || decisionThresholds.length > 0;
+    }
+
+    /* every balancing is crossed with every technique and classifier */
+    public Balancing[] getBalancings() {
+        return balancings;
+    }
+
+    public void setBalancings(Balancing... balancings) {
+        if(balancings.length == 0) {
+            throw new IllegalArgumentException("At least one balancing is needed");
+        }
+        this.balancings = balancings.clone();
+    }
+
+    /* number of releases the training set slides over, 0 for the expanding window that starts at the first release */
+    public int getTrainingWindow() {
+        return trainingWindow;
+    }
+
+    public void setTrainingWindow(int trainingWindow) {
+        if(trainingWindow < 0) {
+            throw new IllegalArgumentException("The training window cannot be negative: " + trainingWindow);
+        }
+        if(streaming && trainingWindow == 0) {
+            throw new IllegalArgumentException("A streaming walk forward needs a sliding training window");
+        }
+        this.trainingWindow = trainingWindow;
+    }
+
+    /*
+     * releases are read from the column store when a step needs them instead of loading the whole dataset. Only for a
+     * sliding training window, set before: an expanding window ends up holding the whole history on the heap anyway.
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        if(streaming && trainingWindow == 0) {
+            throw new IllegalArgumentException("A streaming walk forward needs a sliding training window, set trainingWindow first");
+        }
+        this.streaming = streaming;
+    }
+
+    /* heap a streaming step may use for its training window and testing release, a step that needs more fails the run */
+    public long getHeapBudgetBytes() {
+        return heapBudgetBytes > 0 ? heapBudgetBytes : Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    public void setHeapBudgetBytes(long heapBudgetBytes) {
+        if(heapBudgetBytes <= 0) {
+            throw new IllegalArgumentException("The heap budget must be positive, got " + heapBudgetBytes);
+        }
+        this.heapBudgetBytes = heapBudgetBytes;
+    }
+
+    /* steps in [fromStep, toStep) are run, the others are left to other shards; every step by default */
+    public int getFromStep() {
+        return fromStep;
+    }
+
+    public int getToStep() {
+        return toStep;
+    }
+
+    public void setStepRange(int fromStep, int toStep) {
+        if(fromStep < 1 || toStep < fromStep) {
+            throw new IllegalArgumentException("Invalid step range [" + fromStep + ", " + toStep + ")");
+        }
+        this.fromStep = fromStep;
+        this.toStep = toStep;
+    }
+
+    /* timings of the cells, read by the scheduler at start and updated after every walk forward; null keeps them in memory */
+    public File getCostModelFile() {
+        return costModelFile;
+    }
+
+    public void setCostModelFile(File costModelFile) {
+        this.costModelFile = costModelFile;
+    }
+
+    /* classifiers of every cell, in the order of the enum */
+    public ClassifierType[] getClassifierTypes() {
+        return classifierTypes;
+    }
+
+    public void setClassifierTypes(ClassifierType... classifierTypes) {
+        if(classifierTypes.length == 0) {
+            throw new IllegalArgumentException("At least one classifier is needed");
+        }
+        this.classifierTypes = Arrays.stream(classifierTypes).distinct().sorted().toArray(ClassifierType[]::new);
+    }
+
+    /* in the order of the enum, so that a cost sensitive cell is created after the cell whose model it can reuse */
+    public Technique[] getTechniques() {
+        return techniques;
+    }
+
+    public void setTechniques(Technique... techniques) {
+        if(techniques.length == 0) {
+            throw new IllegalArgumentException("At least one technique is needed");
+        }
+        this.techniques = Arrays.stream(techniques).distinct().sorted().toArray(Technique[]::new);
+    }
+
+    /* IBk searches the neighbours in a KD-tree over primitive arrays instead of scanning the training set */
+    public boolean isKdTreeNearestNeighbours() {
+        return kdTreeNearestNeighbours;
+    }
+
+    public void setKdTreeNearestNeighbours(boolean kdTreeNearestNeighbours) {
+        this.kdTreeNearestNeighbours = kdTreeNearestNeighbours;
+    }
+
+    /* Weka command line options of a classifier, e.g. "-I 50" for a forest of 50 trees; null for the defaults */
+    public String getClassifierOptions(ClassifierType classifierType) {
+        return classifierOptions.get(classifierType);
+    }
+
+    public void setClassifierOptions(ClassifierType classifierType, String options) {
+        if(options == null || options.trim().isEmpty()) {
+            classifierOptions.remove(classifierType);
+        } else {
+            classifierOptions.put(classifierType, options.trim());
+        }
+    }
+
+    /* the options as strings, so that another JVM can run with the same configuration */
+    public Properties toProperties() {
+        Properties properties = new Properties();
+        if(nThreads > 0) {
+            properties.setProperty("nThreads", String.valueOf(nThreads));
+        }
+        properties.setProperty("seed", String.valueOf(seed));
+        properties.setProperty("costFalsePositive", String.valueOf(costFalsePositive));
+        properties.setProperty("costFalseNegative", String.valueOf(costFalseNegative));
+        properties.setProperty("resultBatchSize", String.valueOf(resultBatchSize));
+        properties.setProperty("resultFlushIntervalMillis", String.valueOf(resultFlushIntervalMillis));
+        if(featureSelectionCacheDirectory != null) {
+            properties.setProperty("featureSelectionCacheDirectory", featureSelectionCacheDirectory.getPath());
+        }
+        properties.setProperty("featureSelectionCacheSize", String.valueOf(featureSelectionCacheSize));
+        properties.setProperty("featureSelectionDiskCacheSize", String.valueOf(featureSelectionDiskCacheSize));
+        properties.setProperty("featureSelectionEngine", featureSelectionEngine.name());
+        properties.setProperty("incrementalTraining", String.valueOf(incrementalTraining));
+        properties.setProperty("columnarDataset", String.valueOf(columnarDataset));
+        if(maxConcurrentProjects > 0) {
+            properties.setProperty("maxConcurrentProjects", String.valueOf(maxConcurrentProjects));
+        }
+        properties.setProperty("metrics", String.valueOf(metrics));
+        properties.setProperty("resume", String.valueOf(resume));
+        properties.setProperty("costSensitivityMode", costSensitivityMode.name());
+        properties.setProperty("costRatios", join(costRatios));
+        properties.setProperty("decisionThresholds", join(decisionThresholds));
+        properties.setProperty("balancings", Arrays.stream(balancings).map(Balancing::name).collect(Collectors.joining(",")));
+        properties.setProperty("trainingWindow", String.valueOf(trainingWindow));
+        properties.setProperty("streaming", String.valueOf(streaming));
+        if(heapBudgetBytes > 0) {
+            properties.setProperty("heapBudgetBytes", String.valueOf(heapBudgetBytes));
+        }
+        properties.setProperty("fromStep", String.valueOf(fromStep));
+        properties.setProperty("toStep", String.valueOf(toStep));
+        if(costModelFile != null) {
+            properties.setProperty("costModelFile", costModelFile.getPath());
+        }
+        properties.setProperty("classifierTypes", Arrays.stream(classifierTypes).map(ClassifierType::name).collect(Collectors.joining(",")));
+        properties.setProperty("techniques", Arrays.stream(techniques).map(Technique::name).collect(Collectors.joining(",")));
+        properties.setProperty("kdTreeNearestNeighbours", String.valueOf(kdTreeNearestNeighbours));
+        for(Map.Entry<ClassifierType, String> entry : classifierOptions.entrySet()) {
+            properties.setProperty("classifierOptions." + entry.getKey().name(), entry.getValue());
+        }
+        return properties;
+    }
+
+    /* missing options keep their default */
+    public static WalkForwardConfig fromProperties(Properties properties) {
+        WalkForwardConfig config = new WalkForwardConfig();
+        String nThreads = properties.getProperty("nThreads");
+        if(nThreads != null) {
+            config.setnThreads(Integer.parseInt(nThreads));
+        }
+        config.setSeed(Long.parseLong(properties.getProperty("seed", String.valueOf(config.seed))));
+        config.setCostFalsePositive(Double.parseDouble(properties.getProperty("costFalsePositive", String.valueOf(config.costFalsePositive))));
+        config.setCostFalseNegative(Double.parseDouble(properties.getProperty("costFalseNegative", String.valueOf(config.costFalseNegative))));
+        config.setResultBatchSize(Integer.parseInt(properties.getProperty("resultBatchSize", String.valueOf(config.resultBatchSize))));
+        config.setResultFlushIntervalMillis(Long.parseLong(properties.getProperty("resultFlushIntervalMillis",
+                String.valueOf(config.resultFlushIntervalMillis))));
+        String featureSelectionCacheDirectory = properties.getProperty("featureSelectionCacheDirectory");
+        if(featureSelectionCacheDirectory != null) {
+            config.setFeatureSelectionCacheDirectory(new File(featureSelectionCacheDirectory));
+        }
+        config.setFeatureSelectionCacheSize(Integer.parseInt(properties.getProperty("featureSelectionCacheSize",
+                String.valueOf(config.featureSelectionCacheSize))));
+        config.setFeatureSelectionDiskCacheSize(Integer.parseInt(properties.getProperty("featureSelectionDiskCacheSize",
+                String.valueOf(config.featureSelectionDiskCacheSize))));
+        config.setFeatureSelectionEngine(FeatureSelectionEngine.valueOf(properties.getProperty("featureSelectionEngine",
+                config.featureSelectionEngine.name())));
+        config.setIncrementalTraining(Boolean.parseBoolean(properties.getProperty("incrementalTraining", String.valueOf(config.incrementalTraining))));
+        config.setColumnarDataset(Boolean.parseBoolean(properties.getProperty("columnarDataset", String.valueOf(config.columnarDataset))));
+        String maxConcurrentProjects = properties.getProperty("maxConcurrentProjects");
+        if(maxConcurrentProjects != null) {
+            config.setMaxConcurrentProjects(Integer.parseInt(maxConcurrentProjects));
+        }
+        config.setMetrics(Boolean.parseBoolean(properties.getProperty("metrics", String.valueOf(config.metrics))));
+        config.setResume(Boolean.parseBoolean(properties.getProperty("resume", String.valueOf(config.resume))));
+        config.setCostSensitivityMode(CostSensitivityMode.valueOf(properties.getProperty("costSensitivityMode", config.costSensitivityMode.name())));
+        config.setCostRatios(split(properties.getProperty("costRatios", join(config.costRatios))));
+        config.setDecisionThresholds(split(properties.getProperty("decisionThresholds", join(config.decisionThresholds))));
+        String balancings = properties.getProperty("balancings");
+        if(balancings != null) {
+            config.setBalancings(Arrays.stream(balancings.split(",")).map(String::trim).map(Balancing::valueOf).toArray(Balancing[]::new));
+        }
+        config.setTrainingWindow(Integer.parseInt(properties.getProperty("trainingWindow", String.valueOf(config.trainingWindow))));
+        config.setStreaming(Boolean.parseBoolean(properties.getProperty("streaming", String.valueOf(config.streaming))));
+        String heapBudgetBytes = properties.getProperty("heapBudgetBytes");
+        if(heapBudgetBytes != null) {
+            config.setHeapBudgetBytes(Long.parseLong(heapBudgetBytes));
+        }
+        config.setStepRange(Integer.parseInt(properties.getProperty("fromStep", String.valueOf(config.fromStep))),
+                Integer.parseInt(properties.getProperty("toStep", String.valueOf(config.toStep))));
+        String costModelFile = properties.getProperty("costModelFile");
+        if(costModelFile != null) {
+            config.setCostModelFile(new File(costModelFile));
+        }
+        String classifierTypes = properties.getProperty("classifierTypes");
+        if(classifierTypes != null) {
+            config.setClassifierTypes(Arrays.stream(classifierTypes.split(",")).map(String::trim).map(ClassifierType::valueOf)
+                    .toArray(ClassifierType[]::new));
+        }
+        String techniques = properties.getProperty("techniques");
+        if(techniques != null) {
+            config.setTechniques(Arrays.stream(techniques.split(",")).map(String::trim).map(Technique::valueOf).toArray(Technique[]::new));
+        }
+        config.setKdTreeNearestNeighbours(Boolean.parseBoolean(properties.getProperty("kdTreeNearestNeighbours",
+                String.valueOf(config.kdTreeNearestNeighbours))));
+        for(ClassifierType classifierType : ClassifierType.values()) {
+            config.setClassifierOptions(classifierType, properties.getProperty("classifierOptions." + classifierType.name()));
+        }
+        return config;
+    }
+
+    private static String join(double[] values) {
+        return Arrays.stream(values).mapToObj(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    private static double[] split(String values) {
+        if(values.trim().isEmpty()) {
+            return new double[0];
+        }
+        return Arrays.stream(values.split(",")).map(String::trim).mapToDouble(Double::parseDouble).toArray();
+    }
+}
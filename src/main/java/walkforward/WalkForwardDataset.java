@@ -0,0 +1,84 @@
+package walkforward;
+
+import myexception.NumberOfReleaseOutOfBoundException;
+import weka.core.Instances;
+
+import java.io.IOException;
+
+/*
+ * Projected instances of a whole dataset together with its release index.
+ * Training and testing sets are row ranges of the shared instances: the attribute values are not copied.
+ */
+public class WalkForwardDataset implements AutoCloseable {
+    private final Instances instances;
+    private final ReleaseIndex releaseIndex;
+
+    public WalkForwardDataset(Instances instances, ReleaseIndex releaseIndex) {
+        this.instances = instances;
+        this.releaseIndex = releaseIndex;
+    }
+
+    public Instances getInstances() {
+        return instances;
+    }
+
+    public ReleaseIndex getReleaseIndex() {
+        return releaseIndex;
+    }
+
+    public Instances getTrainingSet(int nRun) throws NumberOfReleaseOutOfBoundException {
+        return getRows(0, releaseIndex.getTrainingSetSize(nRun));
+    }
+
+    /* the training set of step nRun starts with the last trainingWindow releases before nRun, all of them when trainingWindow is 0 */
+    public int getFirstTrainingRelease(int nRun, int trainingWindow) {
+        return trainingWindow == 0 ? 0 : Math.max(0, nRun - trainingWindow);
+    }
+
+    public Instances getTestingSet(int nRun) throws NumberOfReleaseOutOfBoundException {
+        int trainingSetSize = releaseIndex.getTrainingSetSize(nRun);
+        return getRows(trainingSetSize, releaseIndex.getTestingSetSize(trainingSetSize));
+    }
+
+    /* releases in [fromRelease, toRelease) */
+    public Instances getReleases(int fromRelease, int toRelease) {
+        return getRows(releaseIndex.getReleaseOffset(fromRelease), releaseIndex.getRowCount(fromRelease, toRelease));
+    }
+
+    /* the rows in [fromRow, toRow) with their own release index, the values are shared with this dataset */
+    public WalkForwardDataset cut(int fromRow, int toRow) {
+        ReleaseIndex.Builder cutIndex = new ReleaseIndex.Builder();
+        for(int release = releaseIndex.getReleaseOfRow(fromRow); release < releaseIndex.getNumberOfReleases()
+                && releaseIndex.getReleaseOffset(release) < toRow; release++) {
+            int first = Math.max(fromRow, releaseIndex.getReleaseOffset(release));
+            int last = Math.min(toRow, releaseIndex.getReleaseOffset(release + 1));
+            int nBuggy;
+            if(last - first == releaseIndex.getReleaseSize(release)) {
+                nBuggy = releaseIndex.getBuggyCount(release, release + 1);
+            } else {
+                nBuggy = 0;
+                for(int row = first; row < last; row++) {
+                    if(instances.instance(row).classValue() == 1) {
+                        nBuggy++;
+                    }
+                }
+            }
+            cutIndex.addRows(releaseIndex.getRelease(release), last - first, nBuggy);
+        }
+        return new WalkForwardDataset(getRows(fromRow, toRow - fromRow), cutIndex.build());
+    }
+
+    /* the walk forward no longer reads the releases before firstRelease, an in-memory dataset keeps them */
+    public void discardReleasesBefore(int firstRelease) {
+    }
+
+    private Instances getRows(int first, int toCopy) {
+        Instances rows = new Instances(instances, first, toCopy);
+        rows.setClassIndex(instances.classIndex());
+        return rows;
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+}
@@ -0,0 +1,332 @@
+package walkforward;
+
+import featureselection.FeatureSelectionCache;
+import featureselection.FeatureSelectionEngine;
+import featureselection.IncrementalCorrelationSelection;
+import instrumentation.MetricsContext;
+import instrumentation.MetricsRecorder;
+import instrumentation.Stage;
+import instrumentation.StageMetrics;
+import instrumentation.StageTimer;
+import myexception.NumberOfReleaseOutOfBoundException;
+import utils.CSVRow;
+import weka.classifiers.AbstractClassifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * Runs every (step, classifier, technique) cell of the walk forward on a bounded pool of threads.
+ * Result rows are written in the same order as the sequential walk forward.
+ */
+public class WalkForwardRunner {
+    private static final Logger LOGGER = Logger.getLogger(WalkForwardRunner.class.getName());
+    private static final double NANOS_PER_SECOND = 1e9;
+    private final WalkForwardConfig config;
+    /* shared scheduler of a batch, null when every walk forward creates its own */
+    private final CellScheduler sharedScheduler;
+    /* shared by every walk forward of this runner */
+    private final FeatureSelectionCache featureSelectionCache;
+
+    public WalkForwardRunner(WalkForwardConfig config) {
+        this(config, null);
+    }
+
+    public WalkForwardRunner(WalkForwardConfig config, CellScheduler sharedScheduler) {
+        this(config, sharedScheduler, createFeatureSelectionCache(config));
+    }
+
+    public WalkForwardRunner(WalkForwardConfig config, CellScheduler sharedScheduler, FeatureSelectionCache featureSelectionCache) {
+        this.config = config;
+        this.sharedScheduler = sharedScheduler;
+        this.featureSelectionCache = featureSelectionCache;
+    }
+
+    /* kept in memory only unless the config names a cache directory */
+    public static FeatureSelectionCache createFeatureSelectionCache(WalkForwardConfig config) {
+        return new FeatureSelectionCache(config.getFeatureSelectionCacheSize(), config.getFeatureSelectionCacheDirectory(),
+                config.getFeatureSelectionDiskCacheSize());
+    }
+
+    public void walkForward(String datasetPath, int releaseToRemoveFromTop, int releaseToRemoveFromBottom, String outputFile,
+                            String datasetName) throws Exception {
+        MetricsRecorder metricsRecorder = config.isMetrics() ? new MetricsRecorder() : null;
+        MetricsContext previousContext = StageMetrics.getContext();
+        try {
+            walkForward(datasetPath, releaseToRemoveFromTop, releaseToRemoveFromBottom, outputFile, datasetName, metricsRecorder);
+        } finally {
+            StageMetrics.setContext(previousContext);
+        }
+
+        if(metricsRecorder != null) {
+            String metricsFile = getMetricsFile(outputFile);
+            metricsRecorder.writeCsv(metricsFile);
+            LOGGER.log(Level.INFO, "Stage timings of {0}, details in {1}\n{2}", new Object[] {datasetName, metricsFile, metricsRecorder.summary()});
+        }
+    }
+
+    public static String getMetricsFile(String outputFile) {
+        String base = outputFile.endsWith(".csv") ? outputFile.substring(0, outputFile.length() - ".csv".length()) : outputFile;
+        return base + "_metrics.csv";
+    }
+
+    private void walkForward(String datasetPath, int releaseToRemoveFromTop, int releaseToRemoveFromBottom, String outputFile,
+                             String datasetName, MetricsRecorder metricsRecorder) throws Exception {
+        long start = System.nanoTime();
+        setMetricsContext(metricsRecorder, datasetName, 0);
+        WalkForwardDataset dataset = loadDataset(datasetPath, releaseToRemoveFromTop, releaseToRemoveFromBottom);
+        ReleaseIndex releaseIndex = dataset.getReleaseIndex();
+        int nTrainingRelease = releaseIndex.getNumberOfReleases();
+        int totalInstances = releaseIndex.getTotalInstances();
+
+        /* every step keeps its own row views alive until its rows are written, so only a few steps are submitted ahead */
+        int maxStepsInFlight = config.getnThreads();
+        if(config.isStreaming()) {
+            /* the releases of the next step are loaded once the cells of the current one are written */
+            maxStepsInFlight = 0;
+        }
+        CellScheduler scheduler = sharedScheduler != null ? sharedScheduler : new CellScheduler(config);
+        Deque<WalkForwardCell> cells = new ArrayDeque<>();
+        Deque<Future<ResultMetrics>> results = new ArrayDeque<>();
+        CellTimes cellTimes = new CellTimes();
+        CellLayout cellLayout = CellLayout.of(config);
+        Map<ClassifierType, IncrementalModel> incrementalModels = new EnumMap<>(ClassifierType.class);
+        int trainingWindow = config.getTrainingWindow();
+        if(config.isIncrementalTraining() && trainingWindow > 0) {
+            /* an updateable classifier cannot forget the release that leaves the window, every step is rebuilt anyway */
+            LOGGER.log(Level.WARNING, "Incremental training is ignored with a sliding training window of {0} releases", trainingWindow);
+        }
+        for(CellLayout.Entry entry : cellLayout.getEntries()) {
+            if(entry.isIncremental()) {
+                ClassifierType classifierType = entry.getClassifierType();
+                incrementalModels.computeIfAbsent(classifierType, key -> new IncrementalModel(classifierType,
+                        config.getClassifierOptions(classifierType), config.isKdTreeNearestNeighbours()));
+            }
+        }
+        IncrementalCorrelationSelection incrementalSelection = null;
+        if(config.getFeatureSelectionEngine() == FeatureSelectionEngine.INCREMENTAL_CORRELATION) {
+            incrementalSelection = new IncrementalCorrelationSelection(dataset.getInstances());
+        }
+        List<SweepPoint> sweepPoints = cellLayout.getSweepPoints();
+        /* training window of the incremental selection, releases in [selectionStart, selectionEnd) */
+        int selectionStart = 0;
+        int selectionEnd = 0;
+        int fromStep = config.getFromStep();
+        int toStep = Math.min(config.getToStep(), nTrainingRelease - 1);
+        /* keys of every row in the order of an uninterrupted run, to put the rows of a resumed run back in order */
+        List<String> rowOrder = config.isResume() ? new ArrayList<>() : null;
+        try(dataset;
+            CheckpointJournal checkpointJournal = config.isResume() ? CheckpointJournal.resume(outputFile) : CheckpointJournal.create(outputFile);
+            ResultSink resultSink = new ResultSink(outputFile, config.getResultBatchSize(), config.getResultFlushIntervalMillis(), checkpointJournal)) {
+            /* a streaming dataset throws on a step that does not fit its heap budget, before any cell runs */
+            for(int i = fromStep; i < toStep; i++) {
+                dataset.getFirstTrainingRelease(i, trainingWindow);
+            }
+            for(int i = fromStep; i < toStep; i++) {
+                int firstTrainingRelease = dataset.getFirstTrainingRelease(i, trainingWindow);
+                float pctDataOnTraining = WalkForwardUtils.computePctDataOnTraining(releaseIndex.getRowCount(firstTrainingRelease, i), totalInstances);
+                float pctDefectiveInTraining = releaseIndex.computePctDefective(firstTrainingRelease, i);
+                float pctDefectiveInTesting = releaseIndex.computePctDefective(i, i + 1);
+                if(incrementalSelection != null) {
+                    if(selectionEnd < firstTrainingRelease) {
+                        /* a step range that does not start at step 1 begins with the window of its first step */
+                        selectionStart = firstTrainingRelease;
+                        selectionEnd = firstTrainingRelease;
+                    }
+                    /* the training window of step i is the one of step i - 1 plus release i - 1, minus the releases it slid past */
+                    for(; selectionEnd < i; selectionEnd++) {
+                        incrementalSelection.addInstances(dataset.getReleases(selectionEnd, selectionEnd + 1));
+                    }
+                    for(; selectionStart < firstTrainingRelease; selectionStart++) {
+                        incrementalSelection.removeInstances(dataset.getReleases(selectionStart, selectionStart + 1));
+                    }
+                }
+                /* built only if some cell of the step is not in the checkpoint journal */
+                WalkForwardStep step = null;
+                List<WalkForwardCell> stepCells = new ArrayList<>();
+                /* models of the cells of the step shared with their cost sensitive cells, a journaled cell shares none */
+                Map<CellLayout.Entry, CompletableFuture<AbstractClassifier>> trainedModels = new HashMap<>();
+                for(CellLayout.Entry entry : cellLayout.getEntries()) {
+                    Technique technique = entry.getTechnique();
+                    CSVRow csvRow = new CSVRow(outputFile, datasetName, i, pctDataOnTraining, pctDefectiveInTraining, pctDefectiveInTesting,
+                            entry.getClassifierType().getLabel(), entry.getBalancing().getLabel(), technique.getFeatureSelectionLabel(),
+                            technique.getCostSensitivityLabel());
+                    if(rowOrder != null) {
+                        rowOrder.add(CheckpointJournal.keyOf(csvRow));
+                        for(SweepPoint sweepPoint : sweepPoints) {
+                            rowOrder.add(CheckpointJournal.keyOf(createSweepRow(csvRow, sweepPoint)));
+                        }
+                    }
+                    if(isCompleted(checkpointJournal, csvRow, sweepPoints)) {
+                        continue;
+                    }
+                    if(step == null) {
+                        step = createStep(dataset, i, firstTrainingRelease, !incrementalModels.isEmpty(), incrementalSelection, metricsRecorder,
+                                datasetName);
+                    }
+                    WalkForwardCell cell = new WalkForwardCell(step, entry.getClassifierType(), technique, entry.getBalancing(), csvRow, config);
+                    if(entry.isIncremental()) {
+                        IncrementalModel incrementalModel = incrementalModels.get(entry.getClassifierType());
+                        incrementalModel.register(step);
+                        cell.setIncrementalModel(incrementalModel);
+                    }
+                    if(entry.getBaseEntry() != null) {
+                        cell.setBaseModel(trainedModels.get(entry.getBaseEntry()));
+                    }
+                    if(entry.isTrainedModelShared()) {
+                        CompletableFuture<AbstractClassifier> trainedModel = new CompletableFuture<>();
+                        cell.setTrainedModel(trainedModel);
+                        trainedModels.put(entry, trainedModel);
+                    }
+                    cell.setMetricsRecorder(metricsRecorder);
+                    stepCells.add(cell);
+                }
+                cells.addAll(stepCells);
+                results.addAll(scheduler.submit(stepCells));
+
+                while(!cells.isEmpty() && cells.peekFirst().getStep().getNumber() <= i - maxStepsInFlight) {
+                    cellTimes.add(writeNext(cells, results, resultSink, checkpointJournal, sweepPoints));
+                }
+                dataset.discardReleasesBefore(firstTrainingRelease);
+            }
+
+            while(!cells.isEmpty()) {
+                cellTimes.add(writeNext(cells, results, resultSink, checkpointJournal, sweepPoints));
+            }
+        } finally {
+            if(scheduler != sharedScheduler) {
+                scheduler.shutdownNow();
+            } else {
+                /* after a failure, the cells still queued would hold the cores of the batch for nothing */
+                scheduler.cancel(results);
+            }
+        }
+        CheckpointJournal.complete(outputFile, rowOrder);
+        scheduler.saveCostModel();
+        LOGGER.log(Level.INFO, "Walk forward of {0} took {1} s, the cells need at least {2} s on {3} cores",
+                new Object[] {datasetName, (System.nanoTime() - start) / NANOS_PER_SECOND, cellTimes.getLowerBoundNanos(config.getnThreads()) / NANOS_PER_SECOND,
+                        config.getnThreads()});
+    }
+
+    private WalkForwardStep createStep(WalkForwardDataset dataset, int i, int firstTrainingRelease, boolean incrementalTraining,
+                                       IncrementalCorrelationSelection incrementalSelection,
+                                       MetricsRecorder metricsRecorder, String datasetName)
+            throws NumberOfReleaseOutOfBoundException {
+        WalkForwardStep step = new WalkForwardStep(i, dataset.getReleases(firstTrainingRelease, i), dataset.getTestingSet(i),
+                featureSelectionCache);
+        if(incrementalTraining) {
+            step.setAddedRows(dataset.getReleases(i - 1, i));
+        }
+        if(incrementalSelection != null) {
+            setMetricsContext(metricsRecorder, datasetName, i);
+            StageTimer timer = StageMetrics.start(Stage.FEATURE_SELECTION);
+            step.setSelectedAttributes(incrementalSelection.selectAttributes());
+            timer.stop();
+        }
+        return step;
+    }
+
+    /* the releases in [releaseToRemoveFromTop, nReleases - releaseToRemoveFromBottom), whichever store they are read from */
+    WalkForwardDataset loadDataset(String datasetPath, int releaseToRemoveFromTop, int releaseToRemoveFromBottom) throws Exception {
+        if(config.isColumnarDataset() || config.isStreaming()) {
+            File csv = new File(datasetPath);
+            File binary = new File(datasetPath + ColumnarDataset.EXTENSION);
+            if(ColumnarDataset.isStale(csv, binary)) {
+                ColumnarDataset.convert(csv, binary);
+            }
+            if(config.isStreaming()) {
+                ColumnarDataset columnarDataset = ColumnarDataset.open(binary);
+                int nReleases = columnarDataset.getReleaseIndex().getNumberOfReleases();
+                return StreamingDataset.open(columnarDataset, releaseToRemoveFromTop, nReleases - releaseToRemoveFromBottom, binary.getName(),
+                        config.getHeapBudgetBytes());
+            }
+            try(ColumnarDataset columnarDataset = ColumnarDataset.open(binary)) {
+                int nReleases = columnarDataset.getReleaseIndex().getNumberOfReleases();
+                return columnarDataset.load(releaseToRemoveFromTop, nReleases - releaseToRemoveFromBottom, binary.getName());
+            }
+        }
+        WalkForwardDataset dataset = DatasetLoader.load(new File(datasetPath), config.getnThreads());
+        ReleaseIndex releaseIndex = dataset.getReleaseIndex();
+        int nReleases = releaseIndex.getNumberOfReleases();
+        return dataset.cut(releaseIndex.getReleaseOffset(releaseToRemoveFromTop),
+                releaseIndex.getReleaseOffset(nReleases - releaseToRemoveFromBottom));
+    }
+
+    private static void setMetricsContext(MetricsRecorder metricsRecorder, String datasetName, int step) {
+        if(metricsRecorder != null) {
+            StageMetrics.setContext(new MetricsContext(metricsRecorder, datasetName, step, null, null));
+        }
+    }
+
+    private static boolean isCompleted(CheckpointJournal checkpointJournal, CSVRow csvRow, List<SweepPoint> sweepPoints) {
+        if(!checkpointJournal.isCompleted(csvRow)) {
+            return false;
+        }
+        for(SweepPoint sweepPoint : sweepPoints) {
+            if(!checkpointJournal.isCompleted(createSweepRow(csvRow, sweepPoint))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static CSVRow createSweepRow(CSVRow csvRow, SweepPoint sweepPoint) {
+        return new CSVRow(csvRow.getOutputFile(), csvRow.getDataset(), csvRow.getnTrainingRelease(), csvRow.getPctDataOnTraining(),
+                csvRow.getPctDefectiveInTraining(), csvRow.getPctDefectiveInTesting(), csvRow.getClassifier(), csvRow.getBalancing(),
+                csvRow.getFeatureSelection(), sweepPoint.getLabel());
+    }
+
+    /* rows already journaled are not written again, a resumed cell can have some of its sweep rows on disk */
+    private static WalkForwardCell writeNext(Deque<WalkForwardCell> cells, Deque<Future<ResultMetrics>> results, ResultSink resultSink,
+                                  CheckpointJournal checkpointJournal, List<SweepPoint> sweepPoints)
+            throws InterruptedException, ExecutionException, IOException {
+        WalkForwardCell cell = cells.removeFirst();
+        ResultMetrics cellMetrics = results.removeFirst().get();
+        if(!checkpointJournal.isCompleted(cell.getCsvRow())) {
+            resultSink.write(cell.getCsvRow(), cellMetrics);
+        }
+        for(SweepPoint sweepPoint : sweepPoints) {
+            CSVRow sweepRow = createSweepRow(cell.getCsvRow(), sweepPoint);
+            if(checkpointJournal.isCompleted(sweepRow)) {
+                continue;
+            }
+            ResultMetrics metrics = null;
+            try {
+                if(cell.getPredictions() != null) {
+                    metrics = sweepPoint.evaluate(cell.getPredictions());
+                }
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, "Exception caught in the sweep", e);
+            }
+            resultSink.write(sweepRow, metrics);
+        }
+        return cell;
+    }
+
+    /* the walk forward cannot end before its total work spread on every core, nor before its longest cell */
+    private static class CellTimes {
+        private double workNanos = 0;
+        private long longestCellNanos = 0;
+
+        private void add(WalkForwardCell cell) {
+            workNanos += (double) cell.getElapsedNanos() * cell.getExecutionSlots();
+            longestCellNanos = Math.max(longestCellNanos, cell.getElapsedNanos());
+        }
+
+        private double getLowerBoundNanos(int cores) {
+            return Math.max(workNanos / cores, longestCellNanos);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package walkforward;
+
+import balancing.Balancing;
+import featureselection.FeatureSelection;
+import featureselection.FeatureSelectionCache;
+import instrumentation.Stage;
+import instrumentation.StageMetrics;
+import instrumentation.StageTimer;
+import weka.core.Instances;
+import weka.filters.Filter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+public class WalkForwardStep {
+    private final int number;
+    private final Instances trainingSet;
+    private final Instances testingSet;
+    /* subsets already searched on the same training set, by this run or an earlier one */
+    private final FeatureSelectionCache featureSelectionCache;
+    /* attributes picked by an incremental feature selection engine, null when each cell runs its own selection */
+    private int[] selectedAttributes = null;
+    /* release added to the training set since the previous step, null when nothing is trained incrementally */
+    private Instances addedRows = null;
+    /* balanced views of the training set, shared by the cells of the step; a balancing waits only for its own view */
+    private final Map<Balancing, FutureTask<Instances>> balancedTrainingSets = new ConcurrentHashMap<>();
+    /* training sets reduced to the selected attributes, filtered once per balancing for every classifier */
+    private final Map<Balancing, FutureTask<Instances>> filteredTrainingSets = new ConcurrentHashMap<>();
+    private Instances filteredTestingSet = null;
+    private Filter attributeFilter = null;
+    private final Object filterLock = new Object();
+
+    public WalkForwardStep(int number, Instances trainingSet, Instances testingSet, FeatureSelectionCache featureSelectionCache) {
+        this.number = number;
+        this.trainingSet = trainingSet;
+        this.testingSet = testingSet;
+        this.featureSelectionCache = featureSelectionCache;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    public Instances getTrainingSet() {
+        return trainingSet;
+    }
+
+    /* computed by the first cell that asks, the seed must depend only on the step and the balancing */
+    public Instances getTrainingSet(Balancing balancing, long seed) {
+        if(balancing == Balancing.NONE) {
+            return trainingSet;
+        }
+        return computeOnce(balancedTrainingSets.computeIfAbsent(balancing, key -> new FutureTask<>(() -> {
+            StageTimer timer = StageMetrics.start(Stage.BALANCING);
+            Instances balanced = balancing.apply(trainingSet, seed);
+            timer.stop();
+            return balanced;
+        })));
+    }
+
+    public Instances getTestingSet() {
+        return testingSet;
+    }
+
+    /* attributes are selected on the unbalanced training set, the same for every balancing */
+    private Filter getAttributeFilter() {
+        synchronized(filterLock) {
+            if(attributeFilter == null) {
+                attributeFilter = selectedAttributes != null ? FeatureSelection.createSelectionFilter(trainingSet, selectedAttributes)
+                        : FeatureSelection.createCachedBestFirstFilter(trainingSet, featureSelectionCache);
+            }
+            return attributeFilter;
+        }
+    }
+
+    /* null when the filter failed, the next cell tries again */
+    public Instances getFilteredTrainingSet(Balancing balancing, long seed) {
+        FutureTask<Instances> task = filteredTrainingSets.computeIfAbsent(balancing, key -> new FutureTask<>(() ->
+                FeatureSelection.createFilteredInstances(getTrainingSet(balancing, seed), copyAttributeFilter())));
+        Instances filtered = computeOnce(task);
+        if(filtered == null) {
+            filteredTrainingSets.remove(balancing, task);
+        }
+        return filtered;
+    }
+
+    public Instances getFilteredTestingSet() {
+        synchronized(filterLock) {
+            if(filteredTestingSet == null) {
+                filteredTestingSet = FeatureSelection.createFilteredInstances(testingSet, copyAttributeFilter());
+            }
+            return filteredTestingSet;
+        }
+    }
+
+    /* a Weka filter keeps the instances it is filtering, so the balancings filtering at the same time each use a copy */
+    private Filter copyAttributeFilter() {
+        Filter attributeFilter = getAttributeFilter();
+        try {
+            return Filter.makeCopy(attributeFilter);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot copy the attribute filter of step " + number, e);
+        }
+    }
+
+    /* the first caller computes the value, the others wait for it */
+    private static Instances computeOnce(FutureTask<Instances> task) {
+        task.run();
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a training set", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Cannot compute a training set", e.getCause());
+        }
+    }
+
+    public int[] getSelectedAttributes() {
+        return selectedAttributes;
+    }
+
+    public void setSelectedAttributes(int[] selectedAttributes) {
+        this.selectedAttributes = selectedAttributes;
+    }
+
+    public Instances getAddedRows() {
+        return addedRows;
+    }
+
+    public void setAddedRows(Instances addedRows) {
+        this.addedRows = addedRows;
+    }
+}
@@ -3,9 +3,11 @@ package walkforward;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
 import com.opencsv.CSVWriter;
-import com.opencsv.exceptions.CsvException;
 import com.opencsv.exceptions.CsvValidationException;
 import featureselection.FeatureSelection;
+import instrumentation.Stage;
+import instrumentation.StageMetrics;
+import instrumentation.StageTimer;
 import myexception.CountLineCSVException;
 import myexception.NumberOfReleaseOutOfBoundException;
 import utils.CSVRow;
@@ -15,7 +17,7 @@ import weka.classifiers.CostMatrix;
 import weka.classifiers.Evaluation;
 import weka.classifiers.meta.CostSensitiveClassifier;
 import weka.core.Instances;
-import weka.filters.supervised.attribute.AttributeSelection;
+import weka.filters.Filter;
 import weka.filters.unsupervised.attribute.Remove;
 
 import java.io.*;
@@ -23,11 +25,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.logging.Level;
-import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
 public class WalkForwardUtils {
-    private static final Logger LOGGER = LogManager.getLogManager().getLogger(WalkForwardUtils.class.getName());
+    private static final Logger LOGGER = Logger.getLogger(WalkForwardUtils.class.getName());
     private WalkForwardUtils() {}
 
     public static void writeHeader(PrintWriter writer, String datasetName) {
@@ -47,29 +48,15 @@ public class WalkForwardUtils {
         writer.println("@data");
     }
 
+    /* parses the whole file on every call: build a ReleaseIndex once and ask it for every step instead */
+    @Deprecated
     public static int getTrainingSetSize(File dataset, int nRun) throws NumberOfReleaseOutOfBoundException {
         int size = 0;
 
-        try(CSVReader csvReader = new CSVReaderBuilder(new FileReader(dataset)).withSkipLines(1).build()) {
-            List<String[]> allRows = csvReader.readAll();
-            List<String> releaseScanned = new ArrayList<>();
-            for(String[] row : allRows) {
-                if(!releaseScanned.contains(row[0])) {
-                    releaseScanned.add(row[0]);
-                }
-
-                if(releaseScanned.size() > nRun) break;
-                size++;
-
-                if(size >= allRows.size()) {
-                    throw new NumberOfReleaseOutOfBoundException("Number of the run is greater than the number of the versions. " +
-                            "Versions scanned: " + releaseScanned.size() + "nRun: " + nRun);
-                }
-            }
+        try {
+            size = ReleaseIndex.build(dataset).getTrainingSetSize(nRun);
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "I/O Exception in getTrainingSetSize", e);
-        } catch (CsvException e) {
-            LOGGER.log(Level.SEVERE, "CSVException in getTrainingSetSize", e);
         }
 
         return size;
@@ -101,81 +88,64 @@ public class WalkForwardUtils {
         return firstNLines;
     }
 
+    /* parses the whole file on every call: use ReleaseIndex.getNumberOfReleases */
+    @Deprecated
     public static int getNumberOfVersions(File dataset) {
-        List<String> releaseScanned = new ArrayList<>();
-
-        try(CSVReader csvReader = new CSVReaderBuilder(new FileReader(dataset)).withSkipLines(1).build()) {
-            List<String[]> allRows = csvReader.readAll();
-            for(String[] row : allRows) {
-                if(!releaseScanned.contains(row[0])) {
-                    releaseScanned.add(row[0]);
-                }
-            }
+        int numberOfVersions = 0;
 
+        try {
+            numberOfVersions = ReleaseIndex.build(dataset).getNumberOfReleases();
         } catch (FileNotFoundException e) {
             LOGGER.log(Level.SEVERE, "File not found in getNumberOfVersions", e);
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "I/O Exception in getNumberOfVersions", e);
-        } catch (CsvException e) {
-            LOGGER.log(Level.SEVERE, "CSV Exception in getNumberOfVersions", e);
         }
 
-        return releaseScanned.size();
+        return numberOfVersions;
     }
 
+    /* parses the whole file on every call: use ReleaseIndex.getTestingSetSize */
+    @Deprecated
     public static int getTestingSetSize(File dataset, int trainingSetSize) {
-        List<String> scannedVersion = new ArrayList<>();
         int testingSetSize = 0;
 
-        try(CSVReader csvReader = new CSVReaderBuilder(new FileReader(dataset)).withSkipLines(1).build()) {
-            csvReader.skip(trainingSetSize);
-            List<String[]> allRows = csvReader.readAll();
-            for(String[] row : allRows) {
-                if(!scannedVersion.contains(row[0])) {
-                    scannedVersion.add(row[0]);
-                }
-                if(scannedVersion.size() > 1) break;
-
-                testingSetSize++;
-            }
+        try {
+            testingSetSize = ReleaseIndex.build(dataset).getTestingSetSize(trainingSetSize);
         } catch (FileNotFoundException e) {
             LOGGER.log(Level.SEVERE, "File not found in getTestingSetSize", e);
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "I/O Exception in getTestingSetSize", e);
-        } catch (CsvException e) {
-            LOGGER.log(Level.SEVERE, "CSV Exception in getTestingSetSize", e);
         }
 
         return testingSetSize;
     }
 
     public static File removeReleases(String datasetPath, int releaseToRemoveFromTop, int releaseToRemoveFromBottom) {
+        return WalkForwardUtils.removeReleases(datasetPath, releaseToRemoveFromTop, releaseToRemoveFromBottom, new File(Dataset.CUT_DATASET_CSV));
+    }
+
+    public static File removeReleases(String datasetPath, int releaseToRemoveFromTop, int releaseToRemoveFromBottom, File outputFile) {
         File dataset = new File(datasetPath);
-        File outputFile = new File(Dataset.CUT_DATASET_CSV);
-        int totalReleases = WalkForwardUtils.getNumberOfVersions(dataset);
         List<String> scannedRelease = new ArrayList<>();
 
-        try(CSVReader csvReader = new CSVReaderBuilder(new FileReader(dataset)).build();
+        try(CSVReader csvReader = new CSVReaderBuilder(DatasetInput.openReader(dataset)).build();
         CSVWriter csvWriter = new CSVWriter(new FileWriter(outputFile))) {
 
+            int totalReleases = ReleaseIndex.build(dataset).getNumberOfReleases();
             String [] header = csvReader.readNext();
-
+            csvWriter.writeNext(header);
+            int lastRelease = totalReleases - releaseToRemoveFromBottom;
             String[] line;
-            /* skipping first rows */
-            while(scannedRelease.size() <= releaseToRemoveFromTop) {
-                line = csvReader.readNext();
+            /* the row belongs to release scannedRelease.size() - 1, the rows of [releaseToRemoveFromTop, lastRelease) are written */
+            while((line = csvReader.readNext()) != null) {
                 if(!scannedRelease.contains(line[0])) {
                     scannedRelease.add(line[0]);
                 }
-            }
-            csvWriter.writeNext(header);
-            int releaseToWrite = totalReleases - releaseToRemoveFromTop - releaseToRemoveFromBottom;
-            scannedRelease.clear();
-            while(scannedRelease.size() <= releaseToWrite) {
-                line = csvReader.readNext();
-                csvWriter.writeNext(line);
-                if(!scannedRelease.contains(line[0])) {
-                    scannedRelease.add(line[0]);
+                if(scannedRelease.size() > lastRelease) {
+                    break;
+                }
+                if(scannedRelease.size() > releaseToRemoveFromTop) {
+                    csvWriter.writeNext(line);
                 }
             }
             csvWriter.flush();
@@ -222,24 +192,30 @@ public class WalkForwardUtils {
         }
     }
 
+    public static String[] createResultLine(CSVRow csvRow, Evaluation eval) {
+        return WalkForwardUtils.createResultLine(csvRow, ResultMetrics.of(eval));
+    }
+
+    public static String[] createResultLine(CSVRow csvRow, ResultMetrics metrics) {
+        double truePositive = metrics.getTruePositive();
+        double falsePositive = metrics.getFalsePositive();
+        double trueNegative = metrics.getTrueNegative();
+        double falseNegative = metrics.getFalseNegative();
+        double precision = metrics.getPrecision();
+        double recall = metrics.getRecall();
+        double auc = metrics.getAuc();
+        double kappa = metrics.getKappa();
+        return new String[] {csvRow.getDataset(), String.valueOf(csvRow.getnTrainingRelease()), String.valueOf(csvRow.getPctDataOnTraining()),
+                String.valueOf(csvRow.getPctDefectiveInTraining()), String.valueOf(csvRow.getPctDefectiveInTesting()), csvRow.getClassifier(),
+                csvRow.getBalancing(), csvRow.getFeatureSelection(), csvRow.getCostSensitivity(), String.valueOf(truePositive),
+                String.valueOf(falsePositive), String.valueOf(trueNegative), String.valueOf(falseNegative), String.valueOf(precision),
+                String.valueOf(recall), String.valueOf(auc), String.valueOf(kappa)};
+    }
+
     public static void writeResultLine(CSVRow csvRow, Evaluation eval) {
 
         try(CSVWriter csvWriter = new CSVWriter(new FileWriter(csvRow.getOutputFile(), true))) {
-            double truePositive = eval.numTruePositives(1);
-            double falsePositive = eval.numFalsePositives(1);
-            double trueNegative = eval.numTrueNegatives(1);
-            double falseNegative = eval.numFalseNegatives(1);
-            double precision = eval.precision(1);
-            double recall = eval.recall(1);
-            double auc = eval.areaUnderROC(1);
-            double kappa = eval.kappa();
-            String[] line = {csvRow.getDataset(), String.valueOf(csvRow.getnTrainingRelease()), String.valueOf(csvRow.getPctDataOnTraining()),
-                    String.valueOf(csvRow.getPctDefectiveInTraining()), String.valueOf(csvRow.getPctDefectiveInTesting()), csvRow.getClassifier(),
-                    csvRow.getBalancing(), csvRow.getFeatureSelection(), csvRow.getCostSensitivity(), String.valueOf(truePositive),
-                    String.valueOf(falsePositive), String.valueOf(trueNegative), String.valueOf(falseNegative), String.valueOf(precision),
-                    String.valueOf(recall), String.valueOf(auc), String.valueOf(kappa)};
-
-            csvWriter.writeNext(line);
+            csvWriter.writeNext(WalkForwardUtils.createResultLine(csvRow, eval));
             csvWriter.flush();
 
         } catch (IOException e) {
@@ -249,14 +225,21 @@ public class WalkForwardUtils {
     }
 
     public static Evaluation attributeSelection(Instances trainingSet, Instances testingSet, AbstractClassifier classifier) {
-        AttributeSelection attributeSelection = FeatureSelection.createBestFirstFilter(trainingSet);
+        return WalkForwardUtils.attributeSelection(trainingSet, testingSet, classifier, FeatureSelection.createBestFirstFilter(trainingSet));
+    }
+
+    public static Evaluation attributeSelection(Instances trainingSet, Instances testingSet, AbstractClassifier classifier, Filter attributeSelection) {
         Evaluation evaluation = null;
         try {
             Instances filteredTrainingSet = FeatureSelection.createFilteredInstances(trainingSet, attributeSelection);
             Instances filteredTestingSet = FeatureSelection.createFilteredInstances(testingSet, attributeSelection);
+            StageTimer timer = StageMetrics.start(Stage.TRAIN);
             classifier.buildClassifier(filteredTrainingSet);
+            timer.stop();
+            timer = StageMetrics.start(Stage.EVALUATE);
             evaluation = new Evaluation(filteredTrainingSet);
             evaluation.evaluateModel(classifier, filteredTestingSet);
+            timer.stop();
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Exception caught in attributeSelection", e);
         }
@@ -266,30 +249,51 @@ public class WalkForwardUtils {
     public static Evaluation simpleClassify(Instances trainingSet, Instances testingSet, AbstractClassifier classifier) {
         Evaluation eval = null;
         try {
+            StageTimer timer = StageMetrics.start(Stage.TRAIN);
             classifier.buildClassifier(trainingSet);
+            timer.stop();
+            timer = StageMetrics.start(Stage.EVALUATE);
             eval = new Evaluation(trainingSet);
             eval.evaluateModel(classifier, testingSet);
+            timer.stop();
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Exception caught in simpleClassify", e);
         }
         return eval;
     }
 
+    /* trains the classifier, then streams the testing set through it */
+    public static ResultMetrics simpleClassify(Instances trainingSet, Instances testingSet, AbstractClassifier classifier,
+                                               StreamingEvaluator evaluator) {
+        ResultMetrics metrics = null;
+        try {
+            StageTimer timer = StageMetrics.start(Stage.TRAIN);
+            classifier.buildClassifier(trainingSet);
+            timer.stop();
+            timer = StageMetrics.start(Stage.EVALUATE);
+            metrics = evaluator.evaluate(classifier, testingSet);
+            timer.stop();
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Exception caught in simpleClassify", e);
+        }
+        return metrics;
+    }
+
+    /* parses the whole file on every call: use ReleaseIndex.getTotalInstances */
+    @Deprecated
     public static int countLinesCSV(File file) throws CountLineCSVException {
-        List<String[]> allRows = null;
-        try(CSVReader csvReader = new CSVReaderBuilder(new FileReader(file)).withSkipLines(1).build()) {
-            allRows = csvReader.readAll();
+        ReleaseIndex releaseIndex = null;
+        try {
+            releaseIndex = ReleaseIndex.build(file);
         } catch (FileNotFoundException e) {
             LOGGER.log(Level.SEVERE, "File not found in countLinesCSV", e);
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "I/O Exception in countLinesCSV", e);
-        } catch (CsvException e) {
-            LOGGER.log(Level.SEVERE, "CSV Exception in countLinesCSV", e);
         }
-        if(allRows == null) {
-            throw new CountLineCSVException("allRows is null");
+        if(releaseIndex == null) {
+            throw new CountLineCSVException("releaseIndex is null");
         }
-        return allRows.size();
+        return releaseIndex.getTotalInstances();
     }
 
     public static CostMatrix createCostMatrix(double weightFalsePositive, double weightFalseNegative) {
@@ -308,10 +312,14 @@ public class WalkForwardUtils {
             CostSensitiveClassifier costSensitiveClassifier = new CostSensitiveClassifier();
             costSensitiveClassifier.setClassifier(classifier);
             costSensitiveClassifier.setCostMatrix(WalkForwardUtils.createCostMatrix(costFalsePositive, costFalseNegative));
+            StageTimer timer = StageMetrics.start(Stage.TRAIN);
             costSensitiveClassifier.buildClassifier(trainingSet);
+            timer.stop();
 
+            timer = StageMetrics.start(Stage.EVALUATE);
             eval = new Evaluation(trainingSet, costSensitiveClassifier.getCostMatrix());
             eval.evaluateModel(costSensitiveClassifier, testingSet);
+            timer.stop();
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "Exception caught in cost sensitivity", e);
         }
@@ -319,10 +327,59 @@ public class WalkForwardUtils {
         return eval;
     }
 
+    public static ResultMetrics costSensitivityEval(Instances trainingSet, Instances testingSet, AbstractClassifier classifier, double costFalsePositive,
+                                                    double costFalseNegative, StreamingEvaluator evaluator) {
+        ResultMetrics metrics = null;
+        try {
+            CostSensitiveClassifier costSensitiveClassifier = new CostSensitiveClassifier();
+            costSensitiveClassifier.setClassifier(classifier);
+            costSensitiveClassifier.setCostMatrix(WalkForwardUtils.createCostMatrix(costFalsePositive, costFalseNegative));
+            StageTimer timer = StageMetrics.start(Stage.TRAIN);
+            costSensitiveClassifier.buildClassifier(trainingSet);
+            timer.stop();
+
+            timer = StageMetrics.start(Stage.EVALUATE);
+            metrics = evaluator.evaluate(costSensitiveClassifier, testingSet);
+            timer.stop();
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Exception caught in cost sensitivity", e);
+        }
+
+        return metrics;
+    }
+
+    /* the classifier is trained first unless it already is, then its predictions are turned into minimum expected cost decisions */
+    public static ResultMetrics minimumExpectedCostEval(Instances trainingSet, Instances testingSet, AbstractClassifier classifier, boolean trained,
+                                                        double costFalsePositive, double costFalseNegative, StreamingEvaluator evaluator) {
+        ResultMetrics metrics = null;
+        try {
+            if(!trained) {
+                StageTimer timer = StageMetrics.start(Stage.TRAIN);
+                classifier.buildClassifier(trainingSet);
+                timer.stop();
+            }
+            MinimumExpectedCostClassifier minimumExpectedCostClassifier = new MinimumExpectedCostClassifier(classifier,
+                    WalkForwardUtils.createCostMatrix(costFalsePositive, costFalseNegative));
+
+            StageTimer timer = StageMetrics.start(Stage.EVALUATE);
+            metrics = evaluator.evaluate(minimumExpectedCostClassifier, testingSet);
+            timer.stop();
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Exception caught in minimum expected cost", e);
+        }
+
+        return metrics;
+    }
+
     public static Evaluation featureSelectionThenCostSensitivity(Instances trainingSet, Instances testingSet, AbstractClassifier classifier,
                                                                  double costFalsePositive, double costFalseNegative) {
+        return WalkForwardUtils.featureSelectionThenCostSensitivity(trainingSet, testingSet, classifier, costFalsePositive, costFalseNegative,
+                FeatureSelection.createBestFirstFilter(trainingSet));
+    }
+
+    public static Evaluation featureSelectionThenCostSensitivity(Instances trainingSet, Instances testingSet, AbstractClassifier classifier,
+                                                                 double costFalsePositive, double costFalseNegative, Filter attributeFilter) {
         /* Feature Selection */
-        AttributeSelection attributeFilter = FeatureSelection.createBestFirstFilter(trainingSet);
         Instances filteredTraining = FeatureSelection.createFilteredInstances(trainingSet, attributeFilter);
         Instances filteredTesting = FeatureSelection.createFilteredInstances(testingSet, attributeFilter);
         /* Cost sensitivity */
@@ -0,0 +1,204 @@
+package walkforward;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* the metrics read by DatasetParser must have the bits Double.parseDouble gives for the same text */
+class DatasetParserTest {
+    private static final String HEADER = "Version,File Name,size,LOC_touched,NR,NAuth,LOC_added,MAX_LOC_added,AVG_LOC_added,churn,MAX_churn,Buggy";
+    private static final int N_METRICS = DatasetLoader.getNumberOfMetrics();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void plainDecimals() throws IOException {
+        assertParsedLikeJdk("0", "-0", "+7", "12", "0.1", "0.30000000000000004", "-3.5", "123.456", ".5", "5.", "1.0000000000000002",
+                "9007199254740991", "4503599627370497.5");
+    }
+
+    @Test
+    void exponents() throws IOException {
+        assertParsedLikeJdk("1e5", "1E5", "1.5e-3", "-2.5E+10", "1e308", "1.7976931348623157e308", "1e309", "4.9e-324", "2e-324",
+                "1e-320", "2.2250738585072011e-308", "2.2250738585072012e-308", "6.02214076e23", "0e0");
+    }
+
+    @Test
+    void longMantissas() throws IOException {
+        assertParsedLikeJdk("9007199254740992", "9007199254740993", "9007199254740993.0", "123456789012345678901234567890",
+                "0.1234567890123456789012345", "3.14159265358979323846264338327950288", "0.00000000000000000000001",
+                "0.0000000000000000000001", "1.00000000000000011102230246251565404236316680908203125",
+                "179769313486231580793728971405303415079934132710037826936173778980444968292764750946649017977587207096330286416692887910946555547851940402630657488671505820681908902000708383676273854845817711531764475730270069855571366959622842914819860834936475292719074168444365510704342711559699508093042880177904174497792");
+    }
+
+    @Test
+    void quotedFields() throws IOException {
+        File dataset = write(HEADER,
+                "\"1.0\",\"a,b\",\"3.25\",\"1e2\",\"7\",\"0.1\",\"null\",\"-4\",\"5.5\",\"6\",\"9007199254740993\",\"yes\"",
+                "\"2.0\",\"say \"\"hi\"\"\",1,2,3,4,5,6,7,8,9,\"no\"");
+        try(DatasetParser parser = new DatasetParser(dataset)) {
+            assertTrue(parser.next());
+            assertEquals("1.0", parser.getRelease());
+            assertMetrics(parser, "3.25", "1e2", "7", "0.1", "0", "-4", "5.5", "6", "9007199254740993");
+            assertTrue(parser.isBuggy());
+            assertTrue(parser.next());
+            assertEquals("2.0", parser.getRelease());
+            assertMetrics(parser, "1", "2", "3", "4", "5", "6", "7", "8", "9");
+            assertFalse(parser.isBuggy());
+            assertFalse(parser.next());
+        }
+    }
+
+    @Test
+    void crlfLineEndings() throws IOException {
+        File dataset = directory.resolve("crlf.csv").toFile();
+        String text = HEADER + "\r\n" + row("1.0", "1.5", "no") + "\r\n" + row("2.0", "2.5e1", "yes") + "\r\n\r\n" + row("3.0", "0.125", "yes") + "\r";
+        Files.write(dataset.toPath(), text.getBytes(StandardCharsets.US_ASCII));
+        try(DatasetParser parser = new DatasetParser(dataset)) {
+            assertTrue(parser.next());
+            assertEquals("1.0", parser.getRelease());
+            assertEquals(bits("1.5"), bits(parser.getMetric(N_METRICS - 1)));
+            assertFalse(parser.isBuggy());
+            assertTrue(parser.next());
+            assertEquals(bits("2.5e1"), bits(parser.getMetric(N_METRICS - 1)));
+            assertTrue(parser.isBuggy());
+            /* the blank line is skipped, the last record has no newline */
+            assertTrue(parser.next());
+            assertEquals("3.0", parser.getRelease());
+            assertEquals(bits("0.125"), bits(parser.getMetric(N_METRICS - 1)));
+            assertTrue(parser.isBuggy());
+            assertFalse(parser.next());
+            assertTrue(parser.hasUnterminatedRecord());
+        }
+    }
+
+    @Test
+    void nullIsZero() throws IOException {
+        try(DatasetParser parser = new DatasetParser(write(HEADER, row("1.0", "null", "no")))) {
+            assertTrue(parser.next());
+            assertEquals(bits(0.0), bits(parser.getMetric(N_METRICS - 1)));
+        }
+    }
+
+    /* an empty metric is rejected the way Double.parseDouble rejects an empty string */
+    @Test
+    void emptyField() throws IOException {
+        assertThrows(NumberFormatException.class, () -> Double.parseDouble(""));
+        try(DatasetParser parser = new DatasetParser(write(HEADER, row("1.0", "", "no")))) {
+            assertThrows(NumberFormatException.class, parser::next);
+        }
+    }
+
+    @Test
+    void missingFields() throws IOException {
+        try(DatasetParser parser = new DatasetParser(write(HEADER, row("1.0", "1", "no"), "2.0,Foo.java,1,2,3,no"))) {
+            assertTrue(parser.next());
+            IOException e = assertThrows(IOException.class, parser::next);
+            assertTrue(e.getMessage().contains("has 6 fields"), e.getMessage());
+        }
+    }
+
+    /* enough rows that records straddle the refills of the parser buffer */
+    @Test
+    void randomValues() throws IOException {
+        Random random = new Random(42);
+        List<String> lines = new ArrayList<>();
+        lines.add(HEADER);
+        List<String[]> expected = new ArrayList<>();
+        for(int r = 0; r < 20000; r++) {
+            String[] values = new String[N_METRICS];
+            for(int m = 0; m < N_METRICS; m++) {
+                values[m] = randomNumber(random);
+            }
+            expected.add(values);
+            lines.add("R" + (r / 1000) + ",File" + r + ".java," + String.join(",", values) + "," + (random.nextBoolean() ? "yes" : "no"));
+        }
+        try(DatasetParser parser = new DatasetParser(write(lines.toArray(new String[0])))) {
+            for(String[] values : expected) {
+                assertTrue(parser.next());
+                assertMetrics(parser, values);
+            }
+            assertFalse(parser.next());
+        }
+    }
+
+    private static String randomNumber(Random random) {
+        switch(random.nextInt(5)) {
+            case 0:
+                return Integer.toString(random.nextInt(100000));
+            case 1:
+                return String.format(Locale.ROOT, "%." + random.nextInt(8) + "f", random.nextDouble() * 1000);
+            case 2:
+                return Double.toString(Double.longBitsToDouble(random.nextLong() & 0x7fefffffffffffffL));
+            case 3:
+                StringBuilder digits = new StringBuilder();
+                int nDigits = 15 + random.nextInt(15);
+                for(int i = 0; i < nDigits; i++) {
+                    digits.append((char) ('0' + random.nextInt(10)));
+                }
+                digits.insert(1 + random.nextInt(nDigits - 1), '.');
+                return digits.toString();
+            default:
+                return random.nextInt(1000) + "e" + (random.nextInt(40) - 20);
+        }
+    }
+
+    private void assertParsedLikeJdk(String... values) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(HEADER);
+        for(String value : values) {
+            lines.add(row("1.0", value, "no"));
+        }
+        try(DatasetParser parser = new DatasetParser(write(lines.toArray(new String[0])))) {
+            for(String value : values) {
+                assertTrue(parser.next());
+                assertEquals(bits(value), bits(parser.getMetric(N_METRICS - 1)), value);
+            }
+            assertFalse(parser.next());
+        }
+    }
+
+    private static void assertMetrics(DatasetParser parser, String... values) {
+        for(int m = 0; m < N_METRICS; m++) {
+            assertEquals(bits(values[m]), bits(parser.getMetric(m)), values[m]);
+        }
+    }
+
+    /* a row whose last metric is value, the others are 1 */
+    private static String row(String release, String value, String buggy) {
+        StringBuilder row = new StringBuilder(release).append(",Foo.java");
+        for(int m = 0; m < N_METRICS - 1; m++) {
+            row.append(",1");
+        }
+        return row.append(',').append(value).append(',').append(buggy).toString();
+    }
+
+    private File write(String... lines) throws IOException {
+        File dataset = Files.createTempFile(directory, "dataset", ".csv").toFile();
+        Files.write(dataset.toPath(), (String.join("\n", lines) + "\n").getBytes(StandardCharsets.US_ASCII));
+        return dataset;
+    }
+
+    private static long bits(String value) {
+        return Double.doubleToRawLongBits(Double.parseDouble(value));
+    }
+
+    private static long bits(double value) {
+        return Double.doubleToRawLongBits(value);
+    }
+}
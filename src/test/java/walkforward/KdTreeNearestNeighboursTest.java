@@ -0,0 +1,117 @@
+package walkforward;
+
+import org.junit.jupiter.api.Test;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.UpdateableClassifier;
+import weka.classifiers.lazy.IBk;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/*
+ * KdTreeNearestNeighbours must give the distributions of IBk. Both see the same queries in the same order, since IBk
+ * extends its ranges with every query.
+ */
+class KdTreeNearestNeighboursTest {
+    private static final int N_METRICS = DatasetLoader.getNumberOfMetrics();
+
+    @Test
+    void singleNeighbour() throws Exception {
+        assertSameDistributions("-K 1", dataset(400, 0, 10, 1), dataset(200, 0, 10, 2));
+    }
+
+    @Test
+    void majorityOfNeighbours() throws Exception {
+        assertSameDistributions("-K 5", dataset(400, 0, 10, 3), dataset(200, 0, 10, 4));
+    }
+
+    @Test
+    void inverseDistanceWeighting() throws Exception {
+        assertSameDistributions("-K 7 -I", dataset(400, 0, 10, 5), dataset(200, 0, 10, 6));
+    }
+
+    @Test
+    void similarityWeighting() throws Exception {
+        assertSameDistributions("-K 7 -F", dataset(400, 0, 10, 7), dataset(200, 0, 10, 8));
+    }
+
+    /* a few distinct values per metric: many rows tie with the k-th neighbour, and queries land on training rows */
+    @Test
+    void tiedDistances() throws Exception {
+        assertSameDistributions("-K 3", dataset(400, 0, 2, 9), dataset(200, 0, 2, 10));
+        assertSameDistributions("-K 4 -I", dataset(400, 0, 2, 11), dataset(200, 0, 2, 12));
+    }
+
+    @Test
+    void missingValues() throws Exception {
+        assertSameDistributions("-K 5", dataset(400, 0.15, 10, 13), dataset(200, 0.15, 10, 14));
+        assertSameDistributions("-K 5 -F", dataset(400, 0.3, 3, 15), dataset(200, 0.3, 3, 16));
+    }
+
+    @Test
+    void moreNeighboursThanRows() throws Exception {
+        assertSameDistributions("-K 50", dataset(20, 0, 10, 17), dataset(50, 0, 10, 18));
+        assertSameDistributions("-K 50 -I", dataset(20, 0.1, 10, 19), dataset(50, 0.1, 10, 20));
+    }
+
+    /* rows added one at a time between queries, as an incremental model over the releases of the walk forward */
+    @Test
+    void updateClassifier() throws Exception {
+        for(String options : new String[] {"-K 1", "-K 5 -I", "-K 5 -F"}) {
+            Instances initial = dataset(40, 0.1, 4, 21);
+            Instances added = dataset(600, 0.1, 4, 22);
+            Instances testingSet = dataset(100, 0.1, 4, 23);
+            AbstractClassifier ibk = build(new IBk(), options, initial);
+            AbstractClassifier kdTree = build(new KdTreeNearestNeighbours(), options, initial);
+            for(int r = 0; r < added.numInstances(); r++) {
+                ((UpdateableClassifier) ibk).updateClassifier(added.instance(r));
+                ((UpdateableClassifier) kdTree).updateClassifier(added.instance(r));
+                if(r % 50 == 0) {
+                    assertSameDistributions(options, ibk, kdTree, testingSet);
+                }
+            }
+            assertSameDistributions(options, ibk, kdTree, testingSet);
+        }
+    }
+
+    private static void assertSameDistributions(String options, Instances trainingSet, Instances testingSet) throws Exception {
+        assertSameDistributions(options, build(new IBk(), options, trainingSet), build(new KdTreeNearestNeighbours(), options, trainingSet),
+                testingSet);
+    }
+
+    private static void assertSameDistributions(String options, AbstractClassifier ibk, AbstractClassifier kdTree, Instances testingSet)
+            throws Exception {
+        for(int i = 0; i < testingSet.numInstances(); i++) {
+            Instance query = testingSet.instance(i);
+            assertArrayEquals(ibk.distributionForInstance(query), kdTree.distributionForInstance(query), options + ", query " + i);
+        }
+    }
+
+    private static AbstractClassifier build(AbstractClassifier classifier, String options, Instances trainingSet) throws Exception {
+        classifier.setOptions(Utils.splitOptions(options));
+        classifier.buildClassifier(trainingSet);
+        return classifier;
+    }
+
+    /* metrics in [0, maxValue] shifted upwards for the buggy rows, each missing with probability missingRate */
+    private static Instances dataset(int nRows, double missingRate, int maxValue, long seed) {
+        Random random = new Random(seed);
+        Instances instances = DatasetLoader.createHeader("synthetic", nRows);
+        for(int r = 0; r < nRows; r++) {
+            boolean buggy = random.nextDouble() < 0.3;
+            double[] values = new double[N_METRICS + 1];
+            for(int m = 0; m < N_METRICS; m++) {
+                int value = random.nextInt(maxValue + 1) + (buggy && random.nextBoolean() ? 1 : 0);
+                values[m] = random.nextDouble() < missingRate ? Utils.missingValue() : value * (m + 1);
+            }
+            values[N_METRICS] = buggy ? 1 : 0;
+            instances.add(new DenseInstance(1.0, values));
+        }
+        return instances;
+    }
+}
@@ -0,0 +1,116 @@
+package walkforward;
+
+import org.junit.jupiter.api.Test;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Evaluation;
+import weka.classifiers.rules.ZeroR;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* the metrics of a result row computed by StreamingEvaluator must be those of Weka's Evaluation */
+class StreamingEvaluatorTest {
+    private static final int N_METRICS = DatasetLoader.getNumberOfMetrics();
+
+    @Test
+    void naiveBayes() throws Exception {
+        assertSameMetrics(() -> ClassifierType.NAIVE_BAYES.newClassifier(1), dataset(300, 0.2, 1), dataset(200, 0.2, 2));
+    }
+
+    /* a single neighbour gives probabilities of 0 and 1, the AUC is made of ties */
+    @Test
+    void nearestNeighbour() throws Exception {
+        assertSameMetrics(() -> ClassifierType.IBK.newClassifier(1), dataset(300, 0.3, 3), dataset(200, 0.3, 4));
+    }
+
+    @Test
+    void randomForest() throws Exception {
+        assertSameMetrics(() -> ClassifierType.RANDOM_FOREST.newClassifier(1), dataset(300, 0.15, 5), dataset(200, 0.15, 6));
+    }
+
+    @Test
+    void minimumExpectedCost() throws Exception {
+        assertSameMetrics(() -> new MinimumExpectedCostClassifier(ClassifierType.NAIVE_BAYES.newClassifier(1),
+                WalkForwardUtils.createCostMatrix(1, 10)), dataset(300, 0.1, 7), dataset(200, 0.1, 8));
+    }
+
+    /* nothing is predicted positive: precision is NaN */
+    @Test
+    void noPredictedPositives() throws Exception {
+        ResultMetrics metrics = assertSameMetrics(ZeroR::new, dataset(300, 0.1, 9), dataset(200, 0.1, 10));
+        assertEquals(0, metrics.getTruePositive() + metrics.getFalsePositive());
+        assertTrue(Double.isNaN(metrics.getPrecision()));
+    }
+
+    /* no actual positives: recall and AUC are NaN, and kappa is 1 when every instance is predicted negative */
+    @Test
+    void noActualPositives() throws Exception {
+        ResultMetrics metrics = assertSameMetrics(ZeroR::new, dataset(300, 0.1, 11), dataset(200, 0, 12));
+        assertTrue(Double.isNaN(metrics.getRecall()));
+        assertTrue(Double.isNaN(metrics.getAuc()));
+        assertEquals(1, metrics.getKappa());
+    }
+
+    /* the same evaluator is reused from one evaluation to the next */
+    @Test
+    void reusedEvaluator() throws Exception {
+        Instances trainingSet = dataset(300, 0.25, 13);
+        Instances testingSet = dataset(500, 0.25, 14);
+        AbstractClassifier classifier = ClassifierType.NAIVE_BAYES.newClassifier(1);
+        classifier.buildClassifier(trainingSet);
+        StreamingEvaluator evaluator = new StreamingEvaluator();
+        evaluator.evaluate(classifier, testingSet);
+        assertMetricsEqual(evaluate(classifier, trainingSet, dataset(100, 0.4, 15)), evaluator.evaluate(classifier, dataset(100, 0.4, 15)));
+    }
+
+    /* each evaluation gets its own model: IBk extends the ranges of its distance with every instance it classifies */
+    private static ResultMetrics assertSameMetrics(Supplier<AbstractClassifier> classifiers, Instances trainingSet, Instances testingSet)
+            throws Exception {
+        AbstractClassifier classifier = classifiers.get();
+        classifier.buildClassifier(trainingSet);
+        ResultMetrics expected = evaluate(classifier, trainingSet, testingSet);
+        classifier = classifiers.get();
+        classifier.buildClassifier(trainingSet);
+        ResultMetrics actual = new StreamingEvaluator().evaluate(classifier, testingSet);
+        assertMetricsEqual(expected, actual);
+        return actual;
+    }
+
+    private static ResultMetrics evaluate(AbstractClassifier classifier, Instances trainingSet, Instances testingSet) throws Exception {
+        Evaluation evaluation = new Evaluation(trainingSet);
+        evaluation.evaluateModel(classifier, testingSet);
+        return ResultMetrics.of(evaluation);
+    }
+
+    private static void assertMetricsEqual(ResultMetrics expected, ResultMetrics actual) {
+        assertEquals(expected.getTruePositive(), actual.getTruePositive(), "TP");
+        assertEquals(expected.getFalsePositive(), actual.getFalsePositive(), "FP");
+        assertEquals(expected.getTrueNegative(), actual.getTrueNegative(), "TN");
+        assertEquals(expected.getFalseNegative(), actual.getFalseNegative(), "FN");
+        assertEquals(expected.getPrecision(), actual.getPrecision(), "precision");
+        assertEquals(expected.getRecall(), actual.getRecall(), "recall");
+        assertEquals(expected.getKappa(), actual.getKappa(), "kappa");
+        assertEquals(expected.getAuc(), actual.getAuc(), "AUC");
+    }
+
+    /* metrics shifted upwards for the buggy rows, rounded so that some rows tie */
+    private static Instances dataset(int nRows, double defectRate, long seed) {
+        Random random = new Random(seed);
+        Instances instances = DatasetLoader.createHeader("synthetic", nRows);
+        for(int r = 0; r < nRows; r++) {
+            boolean buggy = random.nextDouble() < defectRate;
+            double[] values = new double[N_METRICS + 1];
+            for(int m = 0; m < N_METRICS; m++) {
+                values[m] = Math.rint(Math.abs(random.nextGaussian() * 10 + (buggy ? 8 : 0)));
+            }
+            values[N_METRICS] = buggy ? 1 : 0;
+            instances.add(new DenseInstance(1.0, values));
+        }
+        return instances;
+    }
+}
@@ -0,0 +1,83 @@
+package walkforward;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import weka.core.Instances;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/* the CSV and the column store cut the same releases, and so does the cut CSV written by removeReleases */
+class WalkForwardRunnerTest {
+    private static final String HEADER = "Version,File Name,size,LOC_touched,NR,NAuth,LOC_added,MAX_LOC_added,AVG_LOC_added,churn,MAX_churn,Buggy";
+    private static final int N_METRICS = DatasetLoader.getNumberOfMetrics();
+    private static final int N_RELEASES = 9;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void sameRowsPerStep() throws Exception {
+        File csv = writeDataset(directory.resolve("dataset.csv").toFile());
+        for(int[] removed : new int[][] {{0, 0}, {2, 3}, {1, 0}, {0, 2}}) {
+            String message = removed[0] + " releases removed from the top, " + removed[1] + " from the bottom";
+            WalkForwardDataset fromCsv = new WalkForwardRunner(new WalkForwardConfig()).loadDataset(csv.getPath(), removed[0], removed[1]);
+            WalkForwardConfig columnarConfig = new WalkForwardConfig();
+            columnarConfig.setColumnarDataset(true);
+            WalkForwardDataset fromColumns = new WalkForwardRunner(columnarConfig).loadDataset(csv.getPath(), removed[0], removed[1]);
+            File cutCsv = WalkForwardUtils.removeReleases(csv.getPath(), removed[0], removed[1],
+                    directory.resolve("cut" + removed[0] + removed[1] + ".csv").toFile());
+            WalkForwardDataset fromCutCsv = new WalkForwardRunner(new WalkForwardConfig()).loadDataset(cutCsv.getPath(), 0, 0);
+
+            int nReleases = N_RELEASES - removed[0] - removed[1];
+            assertEquals(nReleases, fromCsv.getReleaseIndex().getNumberOfReleases(), message);
+            assertEquals(nReleases, fromColumns.getReleaseIndex().getNumberOfReleases(), message);
+            assertEquals(nReleases, fromCutCsv.getReleaseIndex().getNumberOfReleases(), message);
+            assertEquals("R" + removed[0], fromCsv.getReleaseIndex().getRelease(0), message);
+            for(int step = 1; step < nReleases - 1; step++) {
+                Instances trainingSet = fromCsv.getTrainingSet(step);
+                Instances testingSet = fromCsv.getTestingSet(step);
+                assertSameRows(trainingSet, fromColumns.getTrainingSet(step), message + ", training set of step " + step);
+                assertSameRows(testingSet, fromColumns.getTestingSet(step), message + ", testing set of step " + step);
+                assertSameRows(trainingSet, fromCutCsv.getTrainingSet(step), message + ", training set of step " + step);
+                assertSameRows(testingSet, fromCutCsv.getTestingSet(step), message + ", testing set of step " + step);
+            }
+        }
+    }
+
+    private static void assertSameRows(Instances expected, Instances actual, String message) {
+        assertEquals(expected.numInstances(), actual.numInstances(), message);
+        for(int r = 0; r < expected.numInstances(); r++) {
+            assertArrayEquals(expected.instance(r).toDoubleArray(), actual.instance(r).toDoubleArray(), message + ", row " + r);
+        }
+    }
+
+    /* releases of different sizes, the first metric numbers the rows so that a shifted cut shows */
+    private static File writeDataset(File csv) throws IOException {
+        Random random = new Random(7);
+        List<String> lines = new ArrayList<>();
+        lines.add(HEADER);
+        int row = 0;
+        for(int release = 0; release < N_RELEASES; release++) {
+            int releaseSize = 3 + random.nextInt(10);
+            for(int r = 0; r < releaseSize; r++) {
+                StringBuilder line = new StringBuilder("R").append(release).append(",File").append(r).append(".java,").append(row++);
+                for(int m = 1; m < N_METRICS; m++) {
+                    line.append(',').append(random.nextInt(100));
+                }
+                lines.add(line.append(',').append(random.nextDouble() < 0.3 ? "yes" : "no").toString());
+            }
+        }
+        Files.write(csv.toPath(), (String.join("\n", lines) + "\n").getBytes(StandardCharsets.US_ASCII));
+        return csv;
+    }
+}
@@ -0,0 +1,85 @@
+package walkforward;
+
+import balancing.Balancing;
+import featureselection.FeatureSelectionCache;
+import org.junit.jupiter.api.Test;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WalkForwardStepTest {
+    private static final int N_METRICS = DatasetLoader.getNumberOfMetrics();
+    /* some metrics and the class */
+    private static final int[] SELECTED_ATTRIBUTES = {0, 2, 5, N_METRICS};
+
+    /* every balancing and the testing set filtered at once must keep the selected columns of their own rows */
+    @Test
+    void concurrentFiltering() throws Exception {
+        Balancing[] balancings = Balancing.values();
+        ExecutorService executor = Executors.newFixedThreadPool(balancings.length + 1);
+        try {
+            for(int round = 0; round < 20; round++) {
+                WalkForwardStep step = new WalkForwardStep(1, dataset(20000, round), dataset(5000, 100 + round),
+                        new FeatureSelectionCache(1));
+                step.setSelectedAttributes(SELECTED_ATTRIBUTES);
+                long seed = round;
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Instances>> filtered = new ArrayList<>();
+                for(Balancing balancing : balancings) {
+                    filtered.add(executor.submit(() -> {
+                        start.await();
+                        return step.getFilteredTrainingSet(balancing, seed);
+                    }));
+                }
+                Future<Instances> filteredTestingSet = executor.submit(() -> {
+                    start.await();
+                    return step.getFilteredTestingSet();
+                });
+                start.countDown();
+                for(int b = 0; b < balancings.length; b++) {
+                    assertSelected(step.getTrainingSet(balancings[b], seed), filtered.get(b).get(), balancings[b] + ", round " + round);
+                }
+                assertSelected(step.getTestingSet(), filteredTestingSet.get(), "testing set, round " + round);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void assertSelected(Instances instances, Instances filtered, String message) {
+        assertEquals(instances.numInstances(), filtered.numInstances(), message);
+        assertEquals(SELECTED_ATTRIBUTES.length, filtered.numAttributes(), message);
+        double[] expected = new double[SELECTED_ATTRIBUTES.length];
+        for(int r = 0; r < instances.numInstances(); r++) {
+            for(int a = 0; a < SELECTED_ATTRIBUTES.length; a++) {
+                expected[a] = instances.instance(r).value(SELECTED_ATTRIBUTES[a]);
+            }
+            assertArrayEquals(expected, filtered.instance(r).toDoubleArray(), message + ", row " + r);
+        }
+    }
+
+    private static Instances dataset(int nRows, long seed) {
+        Random random = new Random(seed);
+        Instances instances = DatasetLoader.createHeader("synthetic", nRows);
+        for(int r = 0; r < nRows; r++) {
+            boolean buggy = random.nextDouble() < 0.2;
+            double[] values = new double[N_METRICS + 1];
+            for(int m = 0; m < N_METRICS; m++) {
+                values[m] = random.nextInt(1000) + (buggy ? 500 : 0);
+            }
+            values[N_METRICS] = buggy ? 1 : 0;
+            instances.add(new DenseInstance(1.0, values));
+        }
+        return instances;
+    }
+}